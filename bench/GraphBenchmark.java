@@ -0,0 +1,118 @@
+package taskChainPlanner;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Benchmarks for the DirectedAcyclicGraph mutations and queries.
+ *
+ * The graph is built once per trial, building it per invocation would
+ * dominate the measurement for the larger sizes. insertEdge therefore
+ * removes an existing edge and inserts it back, while removeNode works
+ * on a copy of the graph made outside of the measurement.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx8g"})
+public class GraphBenchmark {
+    @Param({"1000", "10000", "100000", "1000000"})
+    public int size;
+
+    @Param({"CHAIN", "FAN_OUT", "LAYERED", "DIAMOND"})
+    public GraphShape shape;
+
+    private DirectedAcyclicGraph<Task> graph;
+    private Task[] tasks;
+    private int next = 0;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        graph = new DirectedAcyclicGraph<>();
+        tasks = shape.build(graph, size);
+    }
+
+    /**
+     * Picks the next task that has dependencies, cycling through the graph.
+     */
+    private Task nextDependantTask() {
+        for (int attempts = 0; attempts < size; attempts++) {
+            next = (next + 7919) % size;
+            if (!graph.get(tasks[next]).isEmpty()) {
+                return tasks[next];
+            }
+        }
+        return tasks[next];
+    }
+
+    @Benchmark
+    public Object insertEdge() {
+        Task task = nextDependantTask();
+        ArrayList<Task> dependencies = graph.get(task);
+        if (dependencies.isEmpty()) {
+            return null;
+        }
+        Task dependency = dependencies.get(dependencies.size() - 1);
+        graph.removeEdge(task, dependency);
+        return graph.insertEdge(task, dependency);
+    }
+
+    /**
+     * Holds a fresh copy of the graph for each removeNode invocation,
+     * restoring the removed task would cost more than removing it.
+     */
+    @State(Scope.Thread)
+    public static class RemovalState {
+        private DirectedAcyclicGraph<Task> graph;
+        private Task task;
+        private int next = 0;
+
+        @Setup(Level.Invocation)
+        public void setup(GraphBenchmark benchmark) {
+            graph = benchmark.graph.clone();
+            task = benchmark.tasks[next = (next + 7919) % benchmark.size];
+        }
+    }
+
+    @Benchmark
+    public void removeNode(RemovalState state) {
+        state.graph.removeNode(state.task);
+    }
+
+    @Benchmark
+    public DirectedAcyclicGraph<Task> cloneGraph() {
+        return graph.clone();
+    }
+
+    @Benchmark
+    public void edges(Blackhole blackhole) {
+        for (DirectedAcyclicGraph.Edge<Task> edge : graph.edges()) {
+            blackhole.consume(edge);
+        }
+    }
+
+    @Benchmark
+    public void forEachEdge(Blackhole blackhole) {
+        graph.forEachEdge(blackhole::consume);
+    }
+
+    @Benchmark
+    public CompactGraph<Task> freeze() {
+        return graph.freeze();
+    }
+}
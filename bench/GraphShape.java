@@ -0,0 +1,73 @@
+package taskChainPlanner;
+
+import java.util.Random;
+
+/**
+ * The graph shapes the benchmarks are run against.
+ *
+ * Every shape builds a graph of tasks where task i only depends on tasks
+ * with a lower index, and the tasks are inserted from the highest index
+ * down, so building the graph never has to reorder the graph's
+ * topological order and stays linear even for a million tasks.
+ *
+ * - CHAIN: every task depends on the one before it
+ * - FAN_OUT: every task depends on a single root task
+ * - LAYERED: square-ish layers, each task depends on up to three
+ *   random tasks of the previous layer
+ * - DIAMOND: a square lattice, each task depends on its neighbors
+ *   above and to the left
+ */
+public enum GraphShape {
+    CHAIN,
+    FAN_OUT,
+    LAYERED,
+    DIAMOND;
+
+    private static final long SEED = 42;
+
+    /**
+     * Builds a graph of this shape.
+     *
+     * @param graph The empty graph to build into.
+     * @param size The number of tasks in the graph.
+     * @return The tasks of the graph, indexed as described above.
+     */
+    public Task[] build(DirectedAcyclicGraph<Task> graph, int size) {
+        Task[] tasks = new Task[size];
+        for (int i = size - 1; i >= 0; i--) {
+            tasks[i] = new Task(i, i);
+            tasks[i].setName("Task " + i);
+            graph.insertNode(tasks[i]);
+        }
+
+        int width = Math.max(1, (int) Math.sqrt(size));
+        Random random = new Random(SEED);
+        for (int i = 1; i < size; i++) {
+            switch (this) {
+                case CHAIN:
+                    graph.insertEdge(tasks[i], tasks[i - 1]);
+                    break;
+                case FAN_OUT:
+                    graph.insertEdge(tasks[i], tasks[0]);
+                    break;
+                case LAYERED:
+                    int layerStart = (i / width) * width;
+                    if (layerStart > 0) {
+                        for (int k = 0; k < 3; k++) {
+                            graph.insertEdge(tasks[i], tasks[layerStart - width + random.nextInt(width)]);
+                        }
+                    }
+                    break;
+                case DIAMOND:
+                    if (i >= width) {
+                        graph.insertEdge(tasks[i], tasks[i - width]);
+                    }
+                    if (i % width != 0) {
+                        graph.insertEdge(tasks[i], tasks[i - 1]);
+                    }
+                    break;
+            }
+        }
+        return tasks;
+    }
+}
@@ -0,0 +1,72 @@
+package taskChainPlanner;
+
+import java.util.Comparator;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Benchmarks for PriorityQueue, filling a queue with every task
+ * and then draining it, ordered the same way sortTasks orders them.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx8g"})
+public class PriorityQueueBenchmark {
+    @Param({"1000", "10000", "100000", "1000000"})
+    public int size;
+
+    private Task[] tasks;
+    private Comparator<Task> comparator = (a, b) -> {
+        if (a.priority() == b.priority()) {
+            return Integer.compare(a.id(), b.id());
+        }
+        return Integer.compare(a.priority(), b.priority());
+    };
+
+    @Setup(Level.Trial)
+    public void setup() {
+        Random random = new Random(42);
+        tasks = new Task[size];
+        for (int i = 0; i < size; i++) {
+            tasks[i] = new Task(0, 0);
+            tasks[i].setId(i);
+            tasks[i].setPriority(random.nextInt(size));
+        }
+    }
+
+    @Benchmark
+    public PriorityQueue<Task> offer() {
+        PriorityQueue<Task> queue = new PriorityQueue<>(comparator);
+        for (Task task : tasks) {
+            queue.offer(task);
+        }
+        return queue;
+    }
+
+    @Benchmark
+    public void offerPoll(Blackhole blackhole) {
+        PriorityQueue<Task> queue = new PriorityQueue<>(comparator);
+        for (Task task : tasks) {
+            queue.offer(task);
+        }
+        while (!queue.isEmpty()) {
+            blackhole.consume(queue.poll());
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package taskChainPlanner;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks for ScheduleSimulator, a single simulation and a sweep over worker counts.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx8g"})
+public class ScheduleBenchmark {
+    @Param({"10000", "100000"})
+    public int size;
+
+    @Param({"LAYERED", "DIAMOND"})
+    public GraphShape shape;
+
+    @Param({"8", "256"})
+    public int workers;
+
+    private ScheduleSimulator simulator;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        DirectedAcyclicGraph<Task> graph = new DirectedAcyclicGraph<>();
+        Task[] tasks = shape.build(graph, size);
+        for (int i = 0; i < tasks.length; i++) {
+            tasks[i].setDuration(1 + i % 10);
+        }
+        simulator = new ScheduleSimulator(graph);
+    }
+
+    @Benchmark
+    public ScheduleSimulator.Schedule simulate() {
+        return simulator.simulate(workers);
+    }
+
+    @Benchmark
+    public double sweepWorkers() {
+        double makespans = 0;
+        for (int count = 1; count <= workers; count++) {
+            makespans += simulator.simulate(count).makespan();
+        }
+        return makespans;
+    }
+}
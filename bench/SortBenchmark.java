@@ -0,0 +1,55 @@
+package taskChainPlanner;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks for Task.sortTasks, sequential, parallel and by critical path.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx8g"})
+public class SortBenchmark {
+    @Param({"1000", "10000", "100000", "1000000"})
+    public int size;
+
+    @Param({"CHAIN", "FAN_OUT", "LAYERED", "DIAMOND"})
+    public GraphShape shape;
+
+    private DirectedAcyclicGraph<Task> graph;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        graph = new DirectedAcyclicGraph<>();
+        shape.build(graph, size);
+    }
+
+    @Benchmark
+    public SortedTasks sortTasks() {
+        return Task.sortTasks(graph);
+    }
+
+    @Benchmark
+    public SortedTasks sortTasksParallel() {
+        return Task.sortTasks(graph, true);
+    }
+
+    @Benchmark
+    public SortedTasks sortTasksCriticalPath() {
+        return Task.sortTasks(graph, TaskSorter.SortMode.CRITICAL_PATH);
+    }
+}
@@ -0,0 +1,467 @@
+package taskChainPlanner;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import javafx.animation.PauseTransition;
+import javafx.application.Platform;
+import javafx.geometry.VPos;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.control.TextField;
+import javafx.scene.layout.Pane;
+import javafx.scene.paint.Color;
+import javafx.scene.text.Font;
+import javafx.scene.text.TextAlignment;
+import javafx.util.Duration;
+
+public class CanvasGraphRenderer implements GraphView, DirectedAcyclicGraph.Listener<Task> {
+    /**
+     * The CanvasGraphRenderer draws the graph onto a single canvas the size of
+     * the pane, rather than keeping JavaFX nodes for each task and edge, so the
+     * scene graph stays the same size however big the plan is.
+     *
+     * Each redraw draws in batched passes, one path per pass: the lines of
+     * all edges, then their arrow heads, then the circles of all tasks, then
+     * their labels. Only the tasks in view are drawn, found through the
+     * spatial index, along with the edges to and from them.
+     *
+     * Changes mark a region of the graph dirty, the area the changed tasks
+     * and edges covered before and after the change, and the dirty regions
+     * are merged and redrawn once on the next pulse, clipped to the region.
+     * Only the tasks in the region are drawn, with the edges crossing it,
+     * found from the tasks within the longest edge's reach of the region.
+     * Panning, zooming and resizing redraw the whole canvas.
+     *
+     * There are no nodes to put event handlers on, so the controller finds
+     * the task or edge under the cursor through the spatial index and edgeAt.
+     * The editable task name is a text field laid over the canvas.
+     */
+    private static final double ARROW_SIZE = 20;
+    private static final double TEXT_SIZE = 12;
+
+    private DirectedAcyclicGraph<Task> graph;
+    private Pane graphPane;
+    private SpatialIndex spatialIndex;
+    private Canvas canvas = new Canvas();
+    private GraphicsContext gc;
+    private double translateX = 0;
+    private double translateY = 0;
+    private double scale = 1.0;
+    private double taskRadius = TASK_RADIUS;
+    private int invalidEdgeTimeout = 500;
+
+    private Task tempStart = null;
+    private double tempX;
+    private double tempY;
+    private List<DirectedAcyclicGraph.Edge<Task>> invalidEdges = new ArrayList<>();
+    private Task editingTask = null;
+    private TextField editingField = null;
+
+    private HashMap<Task, double[]> drawnPositions = new HashMap<>();
+    private double[] dirty = null;
+    private double edgeReach = 0; // the largest x or y extent of any edge drawn
+    private boolean fullRedraw = false;
+    private boolean redrawScheduled = false;
+
+    /**
+     * Constructor for the CanvasGraphRenderer class.
+     *
+     * @param graph The graph to render.
+     * @param graphPane The pane to render the graph on.
+     * @param spatialIndex The index of the graph's tasks, to find the ones in view.
+     */
+    public CanvasGraphRenderer(DirectedAcyclicGraph<Task> graph, Pane graphPane, SpatialIndex spatialIndex) {
+        this.graph = graph;
+        this.graphPane = graphPane;
+        this.spatialIndex = spatialIndex;
+        this.gc = canvas.getGraphicsContext2D();
+        canvas.widthProperty().bind(graphPane.widthProperty());
+        canvas.heightProperty().bind(graphPane.heightProperty());
+        graphPane.getChildren().add(canvas);
+        graph.addListener(this);
+    }
+
+    @Override
+    public void detach() {
+        graph.removeListener(this);
+        canvas.widthProperty().unbind();
+        canvas.heightProperty().unbind();
+    }
+
+    @Override
+    public void renderGraph() {
+        redrawAll();
+    }
+
+    @Override
+    public void setViewport(double translateX, double translateY, double scale) {
+        this.translateX = translateX;
+        this.translateY = translateY;
+        this.scale = scale;
+        if (editingField != null) {
+            placeEditingField();
+        }
+        redrawAll();
+    }
+
+    @Override
+    public void nodeInserted(Task task) {
+        markTaskDirty(task.x(), task.y());
+    }
+
+    @Override
+    public void nodeRemoved(Task task) {
+        if (task == editingTask) {
+            clearEditingField();
+        }
+        drawnPositions.remove(task);
+        markTaskDirty(task.x(), task.y());
+    }
+
+    @Override
+    public void edgeInserted(Task from, Task to) {
+        markEdgeDirty(from.x(), from.y(), to.x(), to.y());
+    }
+
+    @Override
+    public void edgeRemoved(Task from, Task to) {
+        markEdgeDirty(from.x(), from.y(), to.x(), to.y());
+    }
+
+    /**
+     * Redraws the area a task and its edges covered at the previous redraw
+     * and cover now. The previous position is the one the edges were drawn
+     * to, so the region is the bounds of the task's old and new positions
+     * and of the tasks it's connected to.
+     *
+     * @param task The task to update.
+     */
+    @Override
+    public void updateTask(Task task) {
+        if (task == editingTask) {
+            clearEditingField();
+        }
+        double[] previous = drawnPositions.get(task);
+        if (previous != null) {
+            markTaskDirty(previous[0], previous[1]);
+        }
+        markTaskDirty(task.x(), task.y());
+        for (Task dependency : graph.get(task)) {
+            if (previous != null) {
+                markEdgeDirty(previous[0], previous[1], dependency.x(), dependency.y());
+            }
+            markEdgeDirty(task.x(), task.y(), dependency.x(), dependency.y());
+        }
+        for (Task dependant : graph.dependants(task)) {
+            if (previous != null) {
+                markEdgeDirty(dependant.x(), dependant.y(), previous[0], previous[1]);
+            }
+            markEdgeDirty(dependant.x(), dependant.y(), task.x(), task.y());
+        }
+    }
+
+    @Override
+    public DirectedAcyclicGraph.Edge<Task> edgeAt(double x, double y) {
+        for (DirectedAcyclicGraph.Edge<Task> edge : visibleEdges(visibleTasks())) {
+            if (GraphView.segmentDistance(x, y, edge.from.x(), edge.from.y(), edge.to.x(), edge.to.y()) <= EDGE_WIDTH / 2) {
+                return edge;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public void renderTempEdge(Task startTask, double x, double y) {
+        if (tempStart != null) {
+            markEdgeDirty(tempStart.x(), tempStart.y(), tempX, tempY);
+        }
+        tempStart = startTask;
+        tempX = x;
+        tempY = y;
+        markEdgeDirty(startTask.x(), startTask.y(), x, y);
+    }
+
+    @Override
+    public void clearTempEdge() {
+        if (tempStart != null) {
+            markEdgeDirty(tempStart.x(), tempStart.y(), tempX, tempY);
+            tempStart = null;
+        }
+    }
+
+    @Override
+    public void renderInvalidEdge(Task startTask, Task endTask) {
+        DirectedAcyclicGraph.Edge<Task> invalidEdge = new DirectedAcyclicGraph.Edge<>(startTask, endTask);
+        invalidEdges.add(invalidEdge);
+        markEdgeDirty(startTask.x(), startTask.y(), endTask.x(), endTask.y());
+
+        // the pause finishes on the FX thread, without a timer thread per edge
+        PauseTransition timeout = new PauseTransition(Duration.millis(invalidEdgeTimeout));
+        timeout.setOnFinished(event -> {
+            invalidEdges.remove(invalidEdge);
+            markEdgeDirty(startTask.x(), startTask.y(), endTask.x(), endTask.y());
+        });
+        timeout.play();
+    }
+
+    @Override
+    public TextField renderEditableTaskName(Task task) {
+        clearEditingField();
+        editingTask = task;
+        editingField = new TextField(task.name());
+        editingField.setStyle("-fx-border-color: transparent; -fx-background-color: lightblue;");
+        placeEditingField();
+        graphPane.getChildren().add(editingField);
+        markTaskDirty(task.x(), task.y());
+        return editingField;
+    }
+
+    /**
+     * Lays the editable task name over its task's position on the canvas.
+     */
+    private void placeEditingField() {
+        editingField.setPrefWidth(2 * taskRadius * scale);
+        editingField.setLayoutX(translateX + scale * (editingTask.x() - taskRadius));
+        editingField.setLayoutY(translateY + scale * (editingTask.y() - taskRadius / 4));
+    }
+
+    /**
+     * Removes the editable task name, if there is one.
+     */
+    private void clearEditingField() {
+        if (editingField != null) {
+            graphPane.getChildren().remove(editingField);
+            markTaskDirty(editingTask.x(), editingTask.y());
+            editingField = null;
+            editingTask = null;
+        }
+    }
+
+    /**
+     * @return The tasks in view, or near enough for part of them to be.
+     */
+    private List<Task> visibleTasks() {
+        double margin = taskRadius + EDGE_WIDTH;
+        return spatialIndex.query(
+            -translateX / scale - margin, -translateY / scale - margin,
+            (canvas.getWidth() - translateX) / scale + margin, (canvas.getHeight() - translateY) / scale + margin);
+    }
+
+    /**
+     * Gets the edges to and from the tasks in view, each once.
+     *
+     * @param visibleTasks The tasks in view.
+     * @return The edges to draw.
+     */
+    private List<DirectedAcyclicGraph.Edge<Task>> visibleEdges(List<Task> visibleTasks) {
+        HashSet<Task> visible = new HashSet<>(visibleTasks);
+        List<DirectedAcyclicGraph.Edge<Task>> edges = new ArrayList<>();
+        for (Task task : visibleTasks) {
+            edges.addAll(graph.edgesFrom(task));
+            // edges from visible tasks were added with them
+            for (Task dependant : graph.dependants(task)) {
+                if (!visible.contains(dependant)) {
+                    edges.add(graph.edge(dependant, task));
+                }
+            }
+        }
+        return edges;
+    }
+
+    private void markTaskDirty(double x, double y) {
+        markDirty(x - taskRadius, y - taskRadius, x + taskRadius, y + taskRadius);
+    }
+
+    private void markEdgeDirty(double x1, double y1, double x2, double y2) {
+        edgeReach = Math.max(edgeReach, Math.max(Math.abs(x2 - x1), Math.abs(y2 - y1)));
+        double margin = ARROW_SIZE + EDGE_WIDTH;
+        markDirty(Math.min(x1, x2) - margin, Math.min(y1, y2) - margin,
+            Math.max(x1, x2) + margin, Math.max(y1, y2) + margin);
+    }
+
+    /**
+     * Adds an area of the graph to the region redrawn on the next pulse.
+     */
+    private void markDirty(double minX, double minY, double maxX, double maxY) {
+        if (dirty == null) {
+            dirty = new double[] { minX, minY, maxX, maxY };
+        } else {
+            dirty[0] = Math.min(dirty[0], minX);
+            dirty[1] = Math.min(dirty[1], minY);
+            dirty[2] = Math.max(dirty[2], maxX);
+            dirty[3] = Math.max(dirty[3], maxY);
+        }
+        scheduleRedraw();
+    }
+
+    private void redrawAll() {
+        fullRedraw = true;
+        scheduleRedraw();
+    }
+
+    private void scheduleRedraw() {
+        if (!redrawScheduled) {
+            redrawScheduled = true;
+            Platform.runLater(this::redraw);
+        }
+    }
+
+    /**
+     * Redraws the dirty region, or the whole canvas after the view changed.
+     */
+    private void redraw() {
+        redrawScheduled = false;
+        double minX = -translateX / scale;
+        double minY = -translateY / scale;
+        double maxX = (canvas.getWidth() - translateX) / scale;
+        double maxY = (canvas.getHeight() - translateY) / scale;
+        boolean partial = !fullRedraw;
+        if (partial) {
+            if (dirty == null) {
+                return;
+            }
+            minX = Math.max(minX, dirty[0]);
+            minY = Math.max(minY, dirty[1]);
+            maxX = Math.min(maxX, dirty[2]);
+            maxY = Math.min(maxY, dirty[3]);
+        }
+        if (fullRedraw) {
+            drawnPositions.clear();
+        }
+        dirty = null;
+        fullRedraw = false;
+        if (minX >= maxX || minY >= maxY) {
+            return;
+        }
+
+        gc.save();
+        gc.setTransform(scale, 0, 0, scale, translateX, translateY);
+        gc.beginPath();
+        gc.rect(minX, minY, maxX - minX, maxY - minY);
+        gc.clip();
+        gc.clearRect(minX, minY, maxX - minX, maxY - minY);
+
+        boolean lowDetail = scale < LOW_DETAIL_SCALE;
+        List<Task> tasks;
+        List<DirectedAcyclicGraph.Edge<Task>> edges;
+        if (partial) {
+            // an edge crossing the region has both ends within its reach of the region
+            double reach = edgeReach + ARROW_SIZE + EDGE_WIDTH;
+            List<Task> nearby = spatialIndex.query(minX - reach, minY - reach, maxX + reach, maxY + reach);
+            edges = visibleEdges(nearby);
+            double margin = taskRadius + EDGE_WIDTH;
+            tasks = new ArrayList<>();
+            for (Task task : nearby) {
+                if (task.x() + margin >= minX && task.x() - margin <= maxX
+                    && task.y() + margin >= minY && task.y() - margin <= maxY) {
+                    tasks.add(task);
+                }
+            }
+        } else {
+            tasks = visibleTasks();
+            edges = visibleEdges(tasks);
+            edgeReach = 0;
+            for (DirectedAcyclicGraph.Edge<Task> edge : edges) {
+                edgeReach = Math.max(edgeReach,
+                    Math.max(Math.abs(edge.to.x() - edge.from.x()), Math.abs(edge.to.y() - edge.from.y())));
+            }
+        }
+        double[] segments = new double[4 * edges.size()];
+        int count = 0;
+        for (DirectedAcyclicGraph.Edge<Task> edge : edges) {
+            // only the edges crossing the redrawn region
+            if (Math.max(edge.from.x(), edge.to.x()) + ARROW_SIZE >= minX
+                && Math.min(edge.from.x(), edge.to.x()) - ARROW_SIZE <= maxX
+                && Math.max(edge.from.y(), edge.to.y()) + ARROW_SIZE >= minY
+                && Math.min(edge.from.y(), edge.to.y()) - ARROW_SIZE <= maxY) {
+                segments[4 * count] = edge.from.x();
+                segments[4 * count + 1] = edge.from.y();
+                segments[4 * count + 2] = edge.to.x();
+                segments[4 * count + 3] = edge.to.y();
+                count++;
+            }
+        }
+
+        // feedback edges are drawn below the graph, like in the node based view
+        if (tempStart != null) {
+            drawEdges(new double[] { tempStart.x(), tempStart.y(), tempX, tempY }, 1, Color.GRAY, lowDetail);
+        }
+        double[] invalid = new double[4 * invalidEdges.size()];
+        for (int i = 0; i < invalidEdges.size(); i++) {
+            DirectedAcyclicGraph.Edge<Task> edge = invalidEdges.get(i);
+            invalid[4 * i] = edge.from.x();
+            invalid[4 * i + 1] = edge.from.y();
+            invalid[4 * i + 2] = edge.to.x();
+            invalid[4 * i + 3] = edge.to.y();
+        }
+        drawEdges(invalid, invalidEdges.size(), Color.RED, lowDetail);
+        drawEdges(segments, count, Color.GRAY, lowDetail);
+
+        gc.beginPath();
+        for (Task task : tasks) {
+            drawnPositions.put(task, new double[] { task.x(), task.y() });
+            gc.moveTo(task.x() + taskRadius, task.y());
+            gc.arc(task.x(), task.y(), taskRadius, taskRadius, 0, 360);
+        }
+        gc.setFill(Color.LIGHTBLUE);
+        gc.fill();
+        if (!lowDetail) {
+            gc.setStroke(Color.BLACK);
+            gc.setLineWidth(1);
+            gc.stroke();
+
+            gc.setFill(Color.BLACK);
+            gc.setFont(new Font(TEXT_SIZE));
+            gc.setTextAlign(TextAlignment.CENTER);
+            gc.setTextBaseline(VPos.CENTER);
+            for (Task task : tasks) {
+                if (task != editingTask) {
+                    gc.fillText(task.name(), task.x(), task.y(), 2 * taskRadius);
+                }
+                gc.fillText(task.taskState(), task.x(), task.y() + taskRadius / 2, 2 * taskRadius);
+            }
+        }
+        gc.restore();
+    }
+
+    /**
+     * Draws edges as one path of lines and, unless in low detail, one path of
+     * arrow heads.
+     *
+     * @param segments The start and end points of the edges, as x1, y1, x2, y2 for each edge.
+     * @param count The number of edges.
+     * @param color The color to draw them in.
+     * @param lowDetail Whether to leave out the arrow heads.
+     */
+    private void drawEdges(double[] segments, int count, Color color, boolean lowDetail) {
+        if (count == 0) {
+            return;
+        }
+        gc.beginPath();
+        for (int i = 0; i < 4 * count; i += 4) {
+            gc.moveTo(segments[i], segments[i + 1]);
+            gc.lineTo(segments[i + 2], segments[i + 3]);
+        }
+        gc.setStroke(color);
+        gc.setLineWidth(EDGE_WIDTH);
+        gc.stroke();
+        if (lowDetail) {
+            return;
+        }
+
+        gc.beginPath();
+        for (int i = 0; i < 4 * count; i += 4) {
+            double angle = Math.atan2(segments[i + 3] - segments[i + 1], segments[i + 2] - segments[i]);
+            double arrowX = segments[i + 2] - taskRadius * Math.cos(angle);
+            double arrowY = segments[i + 3] - taskRadius * Math.sin(angle);
+            gc.moveTo(arrowX, arrowY);
+            gc.lineTo(arrowX - ARROW_SIZE * Math.cos(angle - Math.PI / 6), arrowY - ARROW_SIZE * Math.sin(angle - Math.PI / 6));
+            gc.lineTo(arrowX - ARROW_SIZE * Math.cos(angle + Math.PI / 6), arrowY - ARROW_SIZE * Math.sin(angle + Math.PI / 6));
+            gc.closePath();
+        }
+        gc.setFill(color);
+        gc.fill();
+    }
+}
@@ -0,0 +1,123 @@
+package taskChainPlanner;
+
+import java.util.HashMap;
+
+public class CompactGraph<T> {
+  /*
+   The compact graph is an immutable snapshot of a DirectedAcyclicGraph
+   in compressed sparse row form, made by DirectedAcyclicGraph.freeze.
+
+   Each node is given a dense int index, in the graph's node iteration
+   order, and the edges are stored as flat int arrays. The outgoing
+   edges of node i are outTargets[outOffsets[i]] up to, but excluding,
+   outTargets[outOffsets[i + 1]], and the same goes for the incoming
+   edges with inOffsets and inTargets.
+
+   Example (A depends on B and C, B depends on C):
+   nodes:      [A, B, C]
+   outOffsets: [0, 2, 3, 3]
+   outTargets: [1, 2, 2]
+   inOffsets:  [0, 0, 1, 3]
+   inTargets:  [0, 0, 1]
+
+   Analysis passes can then run over plain int arrays, which are far
+   more compact and cache friendly than the hash maps of lists in the
+   graph. The arrays are handed out directly and must not be modified.
+  */
+  private final Object[] nodes;
+  private final HashMap<T, Integer> indices;
+  private final int[] outOffsets;
+  private final int[] outTargets;
+  private final int[] inOffsets;
+  private final int[] inTargets;
+
+  CompactGraph(Object[] nodes, HashMap<T, Integer> indices, int[] outOffsets, int[] outTargets,
+      int[] inOffsets, int[] inTargets) {
+    this.nodes = nodes;
+    this.indices = indices;
+    this.outOffsets = outOffsets;
+    this.outTargets = outTargets;
+    this.inOffsets = inOffsets;
+    this.inTargets = inTargets;
+  }
+
+  /**
+   * @return The number of nodes in the snapshot
+   */
+  public int size() {
+    return nodes.length;
+  }
+
+  /**
+   * @return The number of edges in the snapshot
+   */
+  public int edgeCount() {
+    return outTargets.length;
+  }
+
+  /**
+   * Get the node at a dense index.
+   *
+   * @param index The index of the node
+   * @return The node
+   */
+  @SuppressWarnings("unchecked")
+  public T node(int index) {
+    return (T) nodes[index];
+  }
+
+  /**
+   * Get the dense index of a node.
+   *
+   * @param node The node to look up
+   * @return The index of the node, or -1 if it is not in the snapshot
+   */
+  public int indexOf(T node) {
+    Integer index = indices.get(node);
+    return index == null ? -1 : index;
+  }
+
+  /**
+   * @param index The index of the node
+   * @return The number of nodes the node has edges to
+   */
+  public int outDegree(int index) {
+    return outOffsets[index + 1] - outOffsets[index];
+  }
+
+  /**
+   * @param index The index of the node
+   * @return The number of nodes that have edges to the node
+   */
+  public int inDegree(int index) {
+    return inOffsets[index + 1] - inOffsets[index];
+  }
+
+  /**
+   * @return The offsets of each node's outgoing edges, with size() + 1 entries
+   */
+  public int[] outOffsets() {
+    return outOffsets;
+  }
+
+  /**
+   * @return The target indices of the outgoing edges
+   */
+  public int[] outTargets() {
+    return outTargets;
+  }
+
+  /**
+   * @return The offsets of each node's incoming edges, with size() + 1 entries
+   */
+  public int[] inOffsets() {
+    return inOffsets;
+  }
+
+  /**
+   * @return The source indices of the incoming edges
+   */
+  public int[] inTargets() {
+    return inTargets;
+  }
+}
@@ -0,0 +1,305 @@
+package taskChainPlanner;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+public class ConcurrentDirectedAcyclicGraph<T> extends DirectedAcyclicGraph<T> {
+  /*
+   The concurrent graph is a DirectedAcyclicGraph that can be read by any
+   number of threads while another thread edits it.
+
+   Every method takes a read write lock: the edits take the write lock, so
+   an edge's cycle check, reordering and insertion happen as one atomic
+   step, and the reads take the read lock, so readers scan the graph in
+   parallel with each other, and only wait for an edit in progress.
+
+   The plain graph hands out its own node set and adjacency lists, which
+   can't be read safely once the lock is released, so the concurrent graph
+   hands out copies of them instead, taken under the read lock. For whole
+   graph analysis, freeze takes a consistent CompactGraph snapshot under the
+   read lock, which the sorts, the simulator, the executor and the project
+   file already work from, so those can run on background threads while the
+   graph keeps being edited.
+
+   Listeners are called by the editing thread while it holds the write lock,
+   and forEachEdge calls its visitor while holding the read lock, so neither
+   may edit the graph. The adjacency maps are private to DirectedAcyclicGraph,
+   so every access goes through these methods and the lock can't be bypassed.
+  */
+  private ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+  public ConcurrentDirectedAcyclicGraph() {
+    super();
+  }
+
+  /**
+   * Create a graph sized for a number of nodes, so that
+   * filling it in bulk doesn't have to grow it repeatedly.
+   *
+   * @param expectedNodes The number of nodes the graph will hold
+   */
+  public ConcurrentDirectedAcyclicGraph(int expectedNodes) {
+    super(expectedNodes);
+  }
+
+  /**
+   * Create a concurrent graph with the nodes and edges of another graph,
+   * inserting all of the edges in one batch.
+   *
+   * @param source The graph to copy
+   */
+  public ConcurrentDirectedAcyclicGraph(DirectedAcyclicGraph<T> source) {
+    super(source.size());
+    CompactGraph<T> compact = source.freeze();
+    ArrayList<Edge<T>> edges = new ArrayList<Edge<T>>(compact.edgeCount());
+    for (int i = 0; i < compact.size(); i++) {
+      this.insertNode(compact.node(i));
+      edges.addAll(source.edgesFrom(compact.node(i)));
+    }
+    this.insertEdges(edges);
+  }
+
+  @Override
+  public int size() {
+    this.lock.readLock().lock();
+    try {
+      return super.size();
+    } finally {
+      this.lock.readLock().unlock();
+    }
+  }
+
+  @Override
+  public int edgeCount() {
+    this.lock.readLock().lock();
+    try {
+      return super.edgeCount();
+    } finally {
+      this.lock.readLock().unlock();
+    }
+  }
+
+  @Override
+  public void addListener(Listener<T> listener) {
+    this.lock.writeLock().lock();
+    try {
+      super.addListener(listener);
+    } finally {
+      this.lock.writeLock().unlock();
+    }
+  }
+
+  @Override
+  public void removeListener(Listener<T> listener) {
+    this.lock.writeLock().lock();
+    try {
+      super.removeListener(listener);
+    } finally {
+      this.lock.writeLock().unlock();
+    }
+  }
+
+  @Override
+  public int position(T node) {
+    this.lock.readLock().lock();
+    try {
+      return super.position(node);
+    } finally {
+      this.lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Get a copy of the nodes in the graph, in the graph's node iteration order.
+   *
+   * @return The nodes in the graph
+   */
+  @Override
+  public Set<T> nodes() {
+    this.lock.readLock().lock();
+    try {
+      return Collections.unmodifiableSet(new LinkedHashSet<T>(super.nodes()));
+    } finally {
+      this.lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Get a copy of the edges in the graph.
+   *
+   * @return The edges in the graph
+   */
+  @Override
+  public Set<Edge<T>> edges() {
+    this.lock.readLock().lock();
+    try {
+      return Collections.unmodifiableSet(new LinkedHashSet<Edge<T>>(super.edges()));
+    } finally {
+      this.lock.readLock().unlock();
+    }
+  }
+
+  @Override
+  public void forEachEdge(Consumer<? super Edge<T>> visitor) {
+    this.lock.readLock().lock();
+    try {
+      super.forEachEdge(visitor);
+    } finally {
+      this.lock.readLock().unlock();
+    }
+  }
+
+  @Override
+  public Edge<T> edge(T connectFrom, T connectTo) {
+    this.lock.readLock().lock();
+    try {
+      return super.edge(connectFrom, connectTo);
+    } finally {
+      this.lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Get a copy of the handles of the edges from a node.
+   *
+   * @param node The node to get the edges of
+   * @return The edges from the node, or null if it isn't in the graph
+   */
+  @Override
+  public ArrayList<Edge<T>> edgesFrom(T node) {
+    this.lock.readLock().lock();
+    try {
+      return copy(super.edgesFrom(node));
+    } finally {
+      this.lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Get a copy of the neighbors of a node.
+   *
+   * @param node The node to get the neighbors of
+   * @return The neighbors of the node, or null if it isn't in the graph
+   */
+  @Override
+  public ArrayList<T> get(T node) {
+    this.lock.readLock().lock();
+    try {
+      return copy(super.get(node));
+    } finally {
+      this.lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Get a copy of the dependants of a node.
+   *
+   * @param node The node to get the dependants of
+   * @return The dependants of the node, or null if it isn't in the graph
+   */
+  @Override
+  public ArrayList<T> dependants(T node) {
+    this.lock.readLock().lock();
+    try {
+      return copy(super.dependants(node));
+    } finally {
+      this.lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Insert an edge between two nodes, checking for a cycle and inserting
+   * the edge as one atomic step.
+   *
+   * @param connectFrom The node we are connecting from
+   * @param connectTo   The node we are connecting to
+   * @return The handle of the inserted edge, or null if it would create a cycle or already exists
+   */
+  @Override
+  public Edge<T> insertEdge(T connectFrom, T connectTo) {
+    this.lock.writeLock().lock();
+    try {
+      return super.insertEdge(connectFrom, connectTo);
+    } finally {
+      this.lock.writeLock().unlock();
+    }
+  }
+
+  @Override
+  public List<T> insertEdges(Collection<Edge<T>> edges) {
+    this.lock.writeLock().lock();
+    try {
+      return super.insertEdges(edges);
+    } finally {
+      this.lock.writeLock().unlock();
+    }
+  }
+
+  @Override
+  public void removeEdge(T connectFrom, T connectTo) {
+    this.lock.writeLock().lock();
+    try {
+      super.removeEdge(connectFrom, connectTo);
+    } finally {
+      this.lock.writeLock().unlock();
+    }
+  }
+
+  @Override
+  public void insertNode(T node) {
+    this.lock.writeLock().lock();
+    try {
+      super.insertNode(node);
+    } finally {
+      this.lock.writeLock().unlock();
+    }
+  }
+
+  @Override
+  public void removeNode(T node) {
+    this.lock.writeLock().lock();
+    try {
+      super.removeNode(node);
+    } finally {
+      this.lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Freeze the graph into an immutable compact snapshot, consistent
+   * with a single point in time, see CompactGraph for the layout.
+   *
+   * @return The compact snapshot of the graph
+   */
+  @Override
+  public CompactGraph<T> freeze() {
+    this.lock.readLock().lock();
+    try {
+      return super.freeze();
+    } finally {
+      this.lock.readLock().unlock();
+    }
+  }
+
+  @Override
+  public ConcurrentDirectedAcyclicGraph<T> clone() {
+    this.lock.readLock().lock();
+    try {
+      ConcurrentDirectedAcyclicGraph<T> cloned = (ConcurrentDirectedAcyclicGraph<T>) super.clone();
+      cloned.lock = new ReentrantReadWriteLock();
+      return cloned;
+    } finally {
+      this.lock.readLock().unlock();
+    }
+  }
+
+  private static <E> ArrayList<E> copy(ArrayList<E> list) {
+    return list == null ? null : new ArrayList<E>(list);
+  }
+}
@@ -0,0 +1,143 @@
+package taskChainPlanner;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+public class CriticalPath {
+  /*
+   The critical path of a graph of tasks is its longest chain of tasks by
+   duration, the chain that decides how soon the whole plan can be done,
+   no matter how many tasks are worked on at once.
+
+   It is found from the bottom level of each task, the longest duration of
+   any chain from the task through its dependants, the task included:
+   bottom level = duration + the largest bottom level of its dependants
+
+   Example (A depends on B and C, B depends on C, durations A: 1, B: 3, C: 2,
+   D: 4 on its own):
+   bottom levels: A: 1, B: 4, C: 6, D: 4
+   critical path: C, B, A with a length of 6
+
+   The bottom levels are computed in one O(V + E) pass, visiting each task
+   once all of its dependants have been visited. The path starts from the
+   task with no dependencies with the largest bottom level, which is the
+   largest of all, and follows the dependant with the largest bottom level
+   until a task with no dependants, so it lists the tasks in the order they
+   can be done in.
+  */
+  private final CompactGraph<Task> graph;
+  private final double[] bottomLevels;
+  private final List<Task> tasks;
+  private final double length;
+
+  /**
+   * Compute the bottom levels and critical path of a compact graph snapshot.
+   *
+   * @param graph the compact snapshot of the graph of tasks
+   */
+  CriticalPath(CompactGraph<Task> graph) {
+    int n = graph.size();
+    int[] dependencyOffsets = graph.outOffsets();
+    int[] dependencies = graph.outTargets();
+    int[] dependantsOffsets = graph.inOffsets();
+    int[] dependants = graph.inTargets();
+    this.graph = graph;
+    this.bottomLevels = new double[n];
+
+    // Visit tasks once all of their dependants are visited, starting from the ones with none
+    int[] pending = new int[n];
+    int[] visiting = new int[n];
+    int visitingCount = 0;
+    for (int i = 0; i < n; i++) {
+      pending[i] = dependantsOffsets[i + 1] - dependantsOffsets[i];
+      if (pending[i] == 0) {
+        visiting[visitingCount++] = i;
+      }
+    }
+    for (int k = 0; k < visitingCount; k++) {
+      int i = visiting[k];
+      double longest = 0;
+      for (int e = dependantsOffsets[i]; e < dependantsOffsets[i + 1]; e++) {
+        longest = Math.max(longest, bottomLevels[dependants[e]]);
+      }
+      bottomLevels[i] = graph.node(i).duration() + longest;
+      for (int e = dependencyOffsets[i]; e < dependencyOffsets[i + 1]; e++) {
+        if (--pending[dependencies[e]] == 0) {
+          visiting[visitingCount++] = dependencies[e];
+        }
+      }
+    }
+
+    ArrayList<Task> path = new ArrayList<>();
+    int current = -1;
+    for (int i = 0; i < n; i++) {
+      // a task's dependencies have at least its bottom level, so a task with none has the largest
+      boolean start = dependencyOffsets[i + 1] == dependencyOffsets[i];
+      if (start && (current == -1 || bottomLevels[i] > bottomLevels[current])) {
+        current = i;
+      }
+    }
+    this.length = current == -1 ? 0 : bottomLevels[current];
+    while (current != -1) {
+      path.add(graph.node(current));
+      int next = -1;
+      for (int e = dependantsOffsets[current]; e < dependantsOffsets[current + 1]; e++) {
+        if (next == -1 || bottomLevels[dependants[e]] > bottomLevels[next]) {
+          next = dependants[e];
+        }
+      }
+      current = next;
+    }
+    this.tasks = Collections.unmodifiableList(path);
+  }
+
+  /**
+   * Compute the bottom levels and critical path of a graph of tasks.
+   *
+   * @param graph the directed acyclic graph of tasks
+   * @return the critical path of the graph
+   */
+  public static CriticalPath of(DirectedAcyclicGraph<Task> graph) {
+    return new CriticalPath(graph.freeze());
+  }
+
+  /**
+   * @return the tasks on the critical path, in the order they can be done in
+   */
+  public List<Task> tasks() {
+    return tasks;
+  }
+
+  /**
+   * @return the total duration of the tasks on the critical path, the shortest
+   *         time the whole graph can be done in
+   */
+  public double length() {
+    return length;
+  }
+
+  /**
+   * Get the bottom level of a task, the longest duration of any chain
+   * from the task through its dependants, the task included.
+   *
+   * @param task the task to look up
+   * @return the bottom level of the task
+   * @throws IllegalArgumentException if the task isn't in the graph
+   */
+  public double bottomLevel(Task task) {
+    int index = graph.indexOf(task);
+    if (index == -1) {
+      throw new IllegalArgumentException("The task isn't in the graph: " + task);
+    }
+    return bottomLevels[index];
+  }
+
+  /**
+   * @param index the index of a task in the compact graph
+   * @return the bottom level of the task
+   */
+  double bottomLevel(int index) {
+    return bottomLevels[index];
+  }
+}
@@ -1,10 +1,19 @@
 package taskChainPlanner;
 
+import java.util.AbstractSet;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
 import java.util.Set;
-import java.util.Stack;
+import java.util.function.Consumer;
 
 
 public class DirectedAcyclicGraph<T> implements Cloneable {
@@ -20,20 +29,141 @@ public class DirectedAcyclicGraph<T> implements Cloneable {
    D: []
 
    The directed acyclic property is enforced in the
-   insert method, by doing a simple dfs to check if
-   there there is a link from the node we are trying
-   to connect to back to the node we are connecting.
+   insert method, by checking if there is a link from
+   the node we are trying to connect to back to the
+   node we are connecting. To keep that check cheap,
+   the graph maintains a topological order (Pearce and
+   Kelly's dynamic ordering), a position for each node
+   such that every edge points from a lower to a higher
+   position. Only the nodes positioned between the two
+   endpoints of a new edge need to be searched, and
+   only those are reordered when the edge is accepted.
+
+   Example (positions of the graph above):
+   A: 0, B: 1, C: 2, D: 3
+
+   A second adjacency list holds the incoming edges,
+   where the key is the node, and the value is a list
+   of nodes that have edges to the key, its dependants.
+   Both lists are kept consistent by every mutating
+   method, and the maps are private, so the graph can
+   only be edited through those methods.
+
+   Example (incoming edges of the graph above):
+   A: []
+   B: [A]
+   C: [A, B]
+   D: [C]
+
+   Each edge also has a handle, an Edge object that is
+   created once when the edge is inserted and kept in a
+   third adjacency list alongside the outgoing edges, in
+   the same order. The same handle is returned for an
+   edge for as long as it exists, so handles can be used
+   as map keys, and walking the edges allocates nothing.
+
+   Example (edge handles of the graph above):
+   A: [A->B, A->C]
+   B: [B->C]
+   C: [C->D]
+   D: []
+
+   Listeners registered on the graph are told about
+   every node and edge inserted or removed, so derived
+   data like the task sort can follow the edits.
   */
-  public HashMap<T, ArrayList<T>> graph;
+  private static final int SCAN_LIMIT = 16;
+
+  private HashMap<T, ArrayList<T>> graph;
+  private HashMap<T, ArrayList<T>> incoming;
+  private HashMap<T, ArrayList<Edge<T>>> outgoingEdges;
+  private HashMap<T, Integer> order;
+  private int nextPosition = 0;
+  private int edgeCount = 0;
+  private ArrayList<Listener<T>> listeners = new ArrayList<Listener<T>>();
 
   public DirectedAcyclicGraph() {
     this.graph = new HashMap<T, ArrayList<T>>();
+    this.incoming = new HashMap<T, ArrayList<T>>();
+    this.outgoingEdges = new HashMap<T, ArrayList<Edge<T>>>();
+    this.order = new HashMap<T, Integer>();
+  }
+
+  /**
+   * Create a graph sized for a number of nodes, so that
+   * filling it in bulk doesn't have to grow it repeatedly.
+   *
+   * @param expectedNodes The number of nodes the graph will hold
+   */
+  public DirectedAcyclicGraph(int expectedNodes) {
+    int capacity = Math.max(16, (int) (expectedNodes / 0.75f) + 1);
+    this.graph = new HashMap<T, ArrayList<T>>(capacity);
+    this.incoming = new HashMap<T, ArrayList<T>>(capacity);
+    this.outgoingEdges = new HashMap<T, ArrayList<Edge<T>>>(capacity);
+    this.order = new HashMap<T, Integer>(capacity);
   }
 
   public int size() {
     return this.graph.size();
   }
 
+  /**
+   * Get the number of edges in the graph, which is kept as edges
+   * are inserted and removed rather than counted.
+   *
+   * @return The number of edges in the graph
+   */
+  public int edgeCount() {
+    return this.edgeCount;
+  }
+
+  /**
+   * Receives the structural changes made to a graph, so that derived
+   * data like a sort can be updated for just the affected nodes instead
+   * of being recomputed from scratch. Removing a node reports the removal
+   * of each of its edges first.
+   */
+  public interface Listener<T> {
+    default void nodeInserted(T node) {}
+
+    default void nodeRemoved(T node) {}
+
+    default void edgeInserted(T from, T to) {}
+
+    default void edgeRemoved(T from, T to) {}
+  }
+
+  /**
+   * Start reporting structural changes to a listener.
+   *
+   * @param listener The listener to report to
+   */
+  public void addListener(Listener<T> listener) {
+    this.listeners.add(listener);
+  }
+
+  /**
+   * Stop reporting structural changes to a listener.
+   *
+   * @param listener The listener to stop reporting to
+   */
+  public void removeListener(Listener<T> listener) {
+    this.listeners.remove(listener);
+  }
+
+  /**
+   * Get the position of a node in the graph's topological order.
+   * Every node is positioned before the nodes it has edges to,
+   * positions are unique but not contiguous, and they change
+   * as edges are inserted.
+   *
+   * @param node The node to get the position of
+   * @return The position of the node
+   */
+  public int position(T node) {
+    return this.order.get(node);
+  }
+
   /**
    * Get the nodes in the graph.
    *
@@ -45,35 +175,189 @@ public class DirectedAcyclicGraph<T> implements Cloneable {
 
   /**
    * Represents an edge in the graph.
-   * This is only used for the edges method
-   * to provide a convenient way to determine
-   * the nodes that are connected by an edge,
-   * for example when removing an edge or rendering
-   * the graph.
+   * The graph keeps one handle per edge, returned by insertEdge,
+   * edge, edges and forEachEdge for as long as the edge exists,
+   * and edges can also be created on their own to describe
+   * edges to insert, for example with insertEdges.
    */
   public static class Edge<T> {
-    public T from;
-    public T to;
+    public final T from;
+    public final T to;
 
     public Edge(T from, T to) {
       this.from = from;
       this.to = to;
     }
+
+    /**
+     * Edges are equal when they connect the same nodes in the same direction,
+     * so an edge can be looked up by its endpoints.
+     *
+     * @param o The object to compare to
+     * @return Whether the object is an edge between the same nodes
+     */
+    @Override
+    public boolean equals(Object o) {
+      if (!(o instanceof Edge)) {
+        return false;
+      }
+      Edge<?> other = (Edge<?>) o;
+      return this.from.equals(other.from) && this.to.equals(other.to);
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 * this.from.hashCode() + this.to.hashCode();
+    }
   }
 
   /**
    * Get the edges in the graph.
+   * This is a read-only view of the graph's edge handles, not a copy,
+   * so it follows later edits, and the graph must not be edited while
+   * the view is being iterated.
    *
    * @return The edges in the graph
    */
   public Set<Edge<T>> edges() {
-    Set<Edge<T>> edges = new HashSet<Edge<T>>();
-    for (T node : this.graph.keySet()) {
-      for (T neighbor : this.graph.get(node)) {
-        edges.add(new Edge<T>(node, neighbor));
+    return new EdgeSet();
+  }
+
+  /**
+   * Visit every edge in the graph, without allocating.
+   * The graph must not be edited by the visitor.
+   *
+   * @param visitor The visitor to give each edge handle to
+   */
+  public void forEachEdge(Consumer<? super Edge<T>> visitor) {
+    for (ArrayList<Edge<T>> edges : this.outgoingEdges.values()) {
+      for (int i = 0; i < edges.size(); i++) {
+        visitor.accept(edges.get(i));
       }
     }
-    return edges;
+  }
+
+  /**
+   * Get the handle of the edge between two nodes.
+   * This scans the outgoing edges of the from node, so it is O(out-degree).
+   *
+   * @param connectFrom The node the edge starts from
+   * @param connectTo   The node the edge ends at
+   * @return The edge, or null if there is no such edge
+   */
+  public Edge<T> edge(T connectFrom, T connectTo) {
+    return this.findEdge(connectFrom, connectTo);
+  }
+
+  /**
+   * Get the handles of the edges from a node, in the same order as its neighbors.
+   * The list is the graph's own and must not be modified.
+   *
+   * @param node The node to get the edges of
+   * @return The edges from the node
+   */
+  public ArrayList<Edge<T>> edgesFrom(T node) {
+    return this.outgoingEdges.get(node);
+  }
+
+  private Edge<T> findEdge(Object connectFrom, Object connectTo) {
+    ArrayList<Edge<T>> edges = this.outgoingEdges.get(connectFrom);
+    if (edges == null) {
+      return null;
+    }
+    for (int i = 0; i < edges.size(); i++) {
+      if (edges.get(i).to.equals(connectTo)) {
+        return edges.get(i);
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Add an edge to the adjacency lists, keeping the given handle for it.
+   *
+   * @param edge The handle of the edge to add
+   */
+  private void link(Edge<T> edge) {
+    this.graph.get(edge.from).add(edge.to);
+    this.incoming.get(edge.to).add(edge.from);
+    this.outgoingEdges.get(edge.from).add(edge);
+    this.edgeCount++;
+  }
+
+  /**
+   * Remove an edge from the adjacency lists, if it is there.
+   * The outgoing edges and their handles are kept in the same order,
+   * so they are removed at the same index.
+   *
+   * @param connectFrom The node the edge starts from
+   * @param connectTo   The node the edge ends at
+   * @return Whether the edge was there
+   */
+  private boolean unlink(T connectFrom, T connectTo) {
+    ArrayList<T> neighbors = this.graph.get(connectFrom);
+    int i = neighbors == null ? -1 : neighbors.indexOf(connectTo);
+    if (i == -1) {
+      return false;
+    }
+    neighbors.remove(i);
+    this.outgoingEdges.get(connectFrom).remove(i);
+    this.incoming.get(connectTo).remove(connectFrom);
+    this.edgeCount--;
+    return true;
+  }
+
+  /**
+   * A read-only set view over the edge handles.
+   */
+  private class EdgeSet extends AbstractSet<Edge<T>> {
+    @Override
+    public Iterator<Edge<T>> iterator() {
+      return new Iterator<Edge<T>>() {
+        private final Iterator<ArrayList<Edge<T>>> lists = outgoingEdges.values().iterator();
+        private ArrayList<Edge<T>> current = null;
+        private int next = 0;
+
+        @Override
+        public boolean hasNext() {
+          while (this.current == null || this.next >= this.current.size()) {
+            if (!this.lists.hasNext()) {
+              return false;
+            }
+            this.current = this.lists.next();
+            this.next = 0;
+          }
+          return true;
+        }
+
+        @Override
+        public Edge<T> next() {
+          if (!this.hasNext()) {
+            throw new NoSuchElementException();
+          }
+          return this.current.get(this.next++);
+        }
+      };
+    }
+
+    @Override
+    public int size() {
+      return edgeCount;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+      if (!(o instanceof Edge)) {
+        return false;
+      }
+      Edge<?> edge = (Edge<?>) o;
+      return findEdge(edge.from, edge.to) != null;
+    }
+
+    @Override
+    public void forEach(Consumer<? super Edge<T>> action) {
+      forEachEdge(action);
+    }
   }
 
   /**
@@ -87,57 +371,274 @@ public class DirectedAcyclicGraph<T> implements Cloneable {
   }
 
   /**
-   * Check if inserting the edge would create a cycle.
-   * We do this by performing a dfs from the node we are
-   * connecting to, and checking if we can reach the node
-   * we are connecting from.
+   * Get the dependants of a node, the nodes that have an edge to it.
    *
-   * @param node   The node we are trying to connect to
-   * @param target The node we are trying to connect from
+   * @param node The node to get the dependants of
+   * @return The dependants of the node
    */
-  private boolean hasCycle(T node, T target) {
-    if (node == target) {
-      return true;
-    }
+  public ArrayList<T> dependants(T node) {
+    return this.incoming.get(node);
+  }
 
-    Stack<T> visiting = new Stack<T>();
-    HashSet<T> visited = new HashSet<T>();
+  /**
+   * Collect the nodes reachable from a node along edges in the given
+   * direction, visiting only the nodes whose position in the topological
+   * order lies strictly between the bounds.
+   *
+   * @param node     The node to start from
+   * @param edges    The outgoing or incoming adjacency lists
+   * @param lower    Only nodes positioned after this are visited
+   * @param upper    Only nodes positioned before this are visited
+   * @param target   The node whose discovery means there is a cycle, or null
+   * @return The visited nodes including the start, or null if target was reached
+   */
+  private ArrayList<T> discover(T node, HashMap<T, ArrayList<T>> edges, int lower, int upper, T target) {
+    ArrayList<T> visited = new ArrayList<T>();
+    HashSet<T> seen = new HashSet<T>();
+    ArrayDeque<T> visiting = new ArrayDeque<T>();
 
     visiting.push(node);
+    seen.add(node);
     while (!visiting.isEmpty()) {
       T current = visiting.pop();
       visited.add(current);
 
-      for (T neighbor : this.graph.getOrDefault(current, new ArrayList<T>())) {
+      for (T neighbor : edges.get(current)) {
         if (neighbor == target) {
-          return true;
+          return null;
         }
-        if (!visited.contains(neighbor)) {
+        int position = this.order.get(neighbor);
+        if (position > lower && position < upper && seen.add(neighbor)) {
           visiting.push(neighbor);
         }
       }
     }
-    return false;
+    return visited;
   }
 
   /**
    * Insert an edge between two nodes.
    *
+   * The topological order already guarantees there is no path back from
+   * the node we are connecting to when it is positioned after the node we
+   * are connecting from. Otherwise only the nodes positioned between the
+   * two can be on such a path, so the cycle check searches just that
+   * region, and if the edge is accepted, the region is reordered by moving
+   * the nodes that reach the from node ahead of the nodes reachable from
+   * the to node, reusing the positions they already occupied.
+   *
    * @param connect   The node we are connecting from
    * @param connectTo The node we are connecting to
-   * @return True if the edge was inserted, false if it would create a cycle
+   * @return The handle of the inserted edge, or null if it would create a cycle or already exists
    */
   public Edge<T> insertEdge(T connectFrom, T connectTo) {
-      if (this.hasCycle(connectTo, connectFrom)) {
+      if (connectFrom == connectTo) {
         return null;
       }
       if (this.graph.containsKey(connectFrom) && this.graph.get(connectFrom).contains(connectTo)) {
         return null;
       }
-      this.graph.putIfAbsent(connectFrom, new ArrayList<>());
-      this.graph.putIfAbsent(connectTo, new ArrayList<>());
-      this.graph.get(connectFrom).add(connectTo);
-      return new Edge<T>(connectFrom, connectTo);
+      // new nodes have no edges, so they can't be part of a cycle
+      this.insertNode(connectFrom);
+      this.insertNode(connectTo);
+
+      int lower = this.order.get(connectTo);
+      int upper = this.order.get(connectFrom);
+      if (upper > lower) {
+        ArrayList<T> reachable = this.discover(connectTo, this.graph, lower - 1, upper, connectFrom);
+        if (reachable == null) {
+          return null;
+        }
+        ArrayList<T> reaching = this.discover(connectFrom, this.incoming, lower, upper + 1, null);
+        this.reorder(reaching, reachable);
+      }
+
+      Edge<T> edge = new Edge<T>(connectFrom, connectTo);
+      this.link(edge);
+      for (Listener<T> listener : this.listeners) {
+        listener.edgeInserted(connectFrom, connectTo);
+      }
+      return edge;
+  }
+
+  /**
+   * Reassign the positions held by two sets of nodes so that every
+   * node in the first set comes before every node in the second set,
+   * keeping the relative order within each set.
+   *
+   * @param first  The nodes to place first
+   * @param second The nodes to place after them
+   */
+  private void reorder(ArrayList<T> first, ArrayList<T> second) {
+    Comparator<T> byPosition = Comparator.comparingInt(this.order::get);
+    first.sort(byPosition);
+    second.sort(byPosition);
+
+    int[] positions = new int[first.size() + second.size()];
+    int i = 0;
+    for (T node : first) {
+      positions[i++] = this.order.get(node);
+    }
+    for (T node : second) {
+      positions[i++] = this.order.get(node);
+    }
+    Arrays.sort(positions);
+
+    i = 0;
+    for (T node : first) {
+      this.order.put(node, positions[i++]);
+    }
+    for (T node : second) {
+      this.order.put(node, positions[i++]);
+    }
+  }
+
+  /**
+   * Insert a batch of edges between nodes, checking for cycles only once.
+   *
+   * The whole batch is applied first, skipping edges that already exist,
+   * and then the graph is validated with a single topological pass, which
+   * also becomes the graph's new topological order. If the batch would
+   * create a cycle, none of it is kept, and the offending cycle is returned
+   * instead. This is O(V + E) for the whole batch, where inserting the
+   * edges one by one can search the graph once per edge. The given edges
+   * become the handles of the edges they insert.
+   *
+   * Listeners are only told about the nodes and edges of a batch once it
+   * has been validated, so a rejected batch is never reported to them.
+   *
+   * @param edges The edges to insert
+   * @return An empty list if the batch was inserted, otherwise the nodes of a
+   *         cycle in edge order, where the last node has an edge to the first
+   */
+  public List<T> insertEdges(Collection<Edge<T>> edges) {
+    for (Edge<T> edge : edges) {
+      if (edge.from == edge.to) {
+        return List.of(edge.from);
+      }
+    }
+
+    ArrayList<T> insertedNodes = new ArrayList<T>();
+    ArrayList<Edge<T>> insertedEdges = new ArrayList<Edge<T>>();
+    HashMap<T, HashSet<T>> targets = new HashMap<T, HashSet<T>>();
+    for (Edge<T> edge : edges) {
+      for (T node : List.of(edge.from, edge.to)) {
+        if (this.addNode(node)) {
+          insertedNodes.add(node);
+        }
+      }
+      // short lists are scanned, long ones get a set of their targets,
+      // so checking for duplicates stays O(1) per edge
+      ArrayList<T> neighbors = this.graph.get(edge.from);
+      boolean duplicate;
+      if (neighbors.size() < SCAN_LIMIT) {
+        duplicate = neighbors.contains(edge.to);
+      } else {
+        duplicate = !targets.computeIfAbsent(edge.from, node -> new HashSet<T>(neighbors)).add(edge.to);
+      }
+      if (!duplicate) {
+        this.link(edge);
+        insertedEdges.add(edge);
+      }
+    }
+    if (insertedEdges.isEmpty()) {
+      return List.of();
+    }
+
+    CompactGraph<T> compact = this.freeze();
+    int n = compact.size();
+    int[] offsets = compact.outOffsets();
+    int[] neighbors = compact.outTargets();
+    int[] pending = new int[n];
+    int[] sorted = new int[n];
+    int sortedCount = 0;
+    for (int i = 0; i < n; i++) {
+      pending[i] = compact.inDegree(i);
+      if (pending[i] == 0) {
+        sorted[sortedCount++] = i;
+      }
+    }
+    for (int k = 0; k < sortedCount; k++) {
+      int i = sorted[k];
+      for (int e = offsets[i]; e < offsets[i + 1]; e++) {
+        if (--pending[neighbors[e]] == 0) {
+          sorted[sortedCount++] = neighbors[e];
+        }
+      }
+    }
+
+    if (sortedCount < n) {
+      List<T> cycle = this.findCycle(compact, pending);
+      for (Edge<T> edge : insertedEdges) {
+        this.unlink(edge.from, edge.to);
+      }
+      // the nodes were only inserted by this batch, so they have no edges left
+      for (T node : insertedNodes) {
+        this.graph.remove(node);
+        this.incoming.remove(node);
+        this.outgoingEdges.remove(node);
+        this.order.remove(node);
+      }
+      return cycle;
+    }
+
+    for (int k = 0; k < n; k++) {
+      this.order.put(compact.node(sorted[k]), k);
+    }
+    this.nextPosition = n;
+    for (Listener<T> listener : this.listeners) {
+      for (T node : insertedNodes) {
+        listener.nodeInserted(node);
+      }
+      for (Edge<T> edge : insertedEdges) {
+        listener.edgeInserted(edge.from, edge.to);
+      }
+    }
+    return List.of();
+  }
+
+  /**
+   * Find a cycle among the nodes a topological pass could not reach.
+   * Each of those still has a dependant among them, so walking from
+   * dependant to dependant must eventually come back around.
+   *
+   * @param compact The compact snapshot the pass was done on
+   * @param pending The dependants each node had left after the pass
+   * @return The nodes of the cycle in edge order
+   */
+  private List<T> findCycle(CompactGraph<T> compact, int[] pending) {
+    int[] offsets = compact.inOffsets();
+    int[] dependants = compact.inTargets();
+    boolean[] visited = new boolean[compact.size()];
+
+    int current = 0;
+    while (pending[current] == 0) {
+      current++;
+    }
+    while (!visited[current]) {
+      visited[current] = true;
+      for (int e = offsets[current]; e < offsets[current + 1]; e++) {
+        if (pending[dependants[e]] > 0) {
+          current = dependants[e];
+          break;
+        }
+      }
+    }
+
+    // walk the loop again from where it closed, which takes the same steps
+    ArrayList<T> cycle = new ArrayList<T>();
+    int start = current;
+    do {
+      cycle.add(compact.node(current));
+      for (int e = offsets[current]; e < offsets[current + 1]; e++) {
+        if (pending[dependants[e]] > 0) {
+          current = dependants[e];
+          break;
+        }
+      }
+    } while (current != start);
+    Collections.reverse(cycle);
+    return cycle;
   }
 
   /**
@@ -147,8 +648,10 @@ public class DirectedAcyclicGraph<T> implements Cloneable {
    * @param connectTo   The node we are connecting to
    */
   public void removeEdge(T connectFrom, T connectTo) {
-      if (this.graph.containsKey(connectFrom)) {
-          this.graph.get(connectFrom).remove(connectTo);
+      if (this.unlink(connectFrom, connectTo)) {
+          for (Listener<T> listener : this.listeners) {
+            listener.edgeRemoved(connectFrom, connectTo);
+          }
       }
   }
 
@@ -158,21 +661,187 @@ public class DirectedAcyclicGraph<T> implements Cloneable {
    * @param node The node to insert
    */
   public void insertNode(T node) {
-    this.graph.putIfAbsent(node, new ArrayList<>());
+    if (this.addNode(node)) {
+      for (Listener<T> listener : this.listeners) {
+        listener.nodeInserted(node);
+      }
+    }
+  }
+
+  /**
+   * Add a node to the graph without telling the listeners.
+   *
+   * @param node The node to add
+   * @return Whether the node was added, which it isn't if it was already in the graph
+   */
+  private boolean addNode(T node) {
+    if (this.graph.containsKey(node)) {
+      return false;
+    }
+    this.graph.put(node, new ArrayList<>());
+    this.incoming.put(node, new ArrayList<>());
+    this.outgoingEdges.put(node, new ArrayList<>());
+    this.order.put(node, this.nextPosition++);
+    return true;
   }
 
   /**
    * Remove a node from the graph.
+   * Only the adjacency lists of the node's neighbors and dependants are
+   * touched, but removing the node from each of those lists is linear in
+   * the list's length, so this is O(sum of the neighbors' and dependants'
+   * degrees) rather than O(degree).
    *
    * @param node The node to remove
    */
   public void removeNode(T node) {
-    this.graph.remove(node);
-    for (ArrayList<T> neighbors : this.graph.values()) {
-      neighbors.remove(node);
+    ArrayList<T> neighbors = this.graph.remove(node);
+    if (neighbors == null) {
+      return;
+    }
+    this.order.remove(node);
+    this.outgoingEdges.remove(node);
+    ArrayList<T> dependants = this.incoming.remove(node);
+    for (T neighbor : neighbors) {
+      this.incoming.get(neighbor).remove(node);
+    }
+    for (T dependant : dependants) {
+      ArrayList<T> dependantNeighbors = this.graph.get(dependant);
+      int i = dependantNeighbors.indexOf(node);
+      dependantNeighbors.remove(i);
+      this.outgoingEdges.get(dependant).remove(i);
+    }
+    this.edgeCount -= neighbors.size() + dependants.size();
+    for (Listener<T> listener : this.listeners) {
+      for (T neighbor : neighbors) {
+        listener.edgeRemoved(node, neighbor);
+      }
+      for (T dependant : dependants) {
+        listener.edgeRemoved(dependant, node);
+      }
+      listener.nodeRemoved(node);
     }
   }
 
+  /**
+   * Build a graph in bulk from an array of nodes and the edges between
+   * them as pairs of indices into that array, [from, to, from, to, ...].
+   * Acyclicity is checked with a single topological pass over the int
+   * arrays before any node is inserted, and that pass also becomes the
+   * graph's topological order, so this is O(V + E) with no searching.
+   *
+   * @param nodes The nodes of the graph, which must be distinct
+   * @param edges The edges as pairs of node indices
+   * @return The graph
+   * @throws IllegalArgumentException If an edge is out of range, repeated, or part of a cycle
+   */
+  public static <T> DirectedAcyclicGraph<T> fromIndexedEdges(T[] nodes, int[] edges) {
+    int n = nodes.length;
+    int edgeCount = edges.length / 2;
+    int[] outOffsets = new int[n + 1];
+    int[] inDegrees = new int[n];
+    for (int e = 0; e < edgeCount; e++) {
+      int from = edges[2 * e];
+      int to = edges[2 * e + 1];
+      if (from < 0 || from >= n || to < 0 || to >= n || from == to) {
+        throw new IllegalArgumentException("Invalid edge " + from + " -> " + to);
+      }
+      outOffsets[from + 1]++;
+      inDegrees[to]++;
+    }
+    for (int i = 0; i < n; i++) {
+      outOffsets[i + 1] += outOffsets[i];
+    }
+    int[] targets = new int[edgeCount];
+    int[] fill = Arrays.copyOf(outOffsets, n);
+    for (int e = 0; e < edgeCount; e++) {
+      targets[fill[edges[2 * e]]++] = edges[2 * e + 1];
+    }
+    for (int i = 0; i < n; i++) {
+      Arrays.sort(targets, outOffsets[i], outOffsets[i + 1]);
+      for (int e = outOffsets[i] + 1; e < outOffsets[i + 1]; e++) {
+        if (targets[e] == targets[e - 1]) {
+          throw new IllegalArgumentException("Repeated edge " + i + " -> " + targets[e]);
+        }
+      }
+    }
+
+    int[] pending = Arrays.copyOf(inDegrees, n);
+    int[] sorted = new int[n];
+    int sortedCount = 0;
+    for (int i = 0; i < n; i++) {
+      if (pending[i] == 0) {
+        sorted[sortedCount++] = i;
+      }
+    }
+    for (int k = 0; k < sortedCount; k++) {
+      int i = sorted[k];
+      for (int e = outOffsets[i]; e < outOffsets[i + 1]; e++) {
+        if (--pending[targets[e]] == 0) {
+          sorted[sortedCount++] = targets[e];
+        }
+      }
+    }
+    if (sortedCount < n) {
+      throw new IllegalArgumentException("The edges contain a cycle");
+    }
+
+    DirectedAcyclicGraph<T> graph = new DirectedAcyclicGraph<T>(n);
+    for (int k = 0; k < n; k++) {
+      int i = sorted[k];
+      graph.graph.put(nodes[i], new ArrayList<T>(outOffsets[i + 1] - outOffsets[i]));
+      graph.incoming.put(nodes[i], new ArrayList<T>(inDegrees[i]));
+      graph.outgoingEdges.put(nodes[i], new ArrayList<Edge<T>>(outOffsets[i + 1] - outOffsets[i]));
+      graph.order.put(nodes[i], k);
+    }
+    graph.nextPosition = n;
+    if (graph.graph.size() != n) {
+      throw new IllegalArgumentException("The nodes are not distinct");
+    }
+    for (int i = 0; i < n; i++) {
+      for (int e = outOffsets[i]; e < outOffsets[i + 1]; e++) {
+        graph.link(new Edge<T>(nodes[i], nodes[targets[e]]));
+      }
+    }
+    return graph;
+  }
+
+  /**
+   * Freeze the graph into an immutable compact snapshot,
+   * see CompactGraph for the layout.
+   *
+   * @return The compact snapshot of the graph
+   */
+  public CompactGraph<T> freeze() {
+    int n = this.graph.size();
+    Object[] nodes = new Object[n];
+    HashMap<T, Integer> indices = new HashMap<T, Integer>(2 * n);
+    int[] outOffsets = new int[n + 1];
+    int[] inOffsets = new int[n + 1];
+    int i = 0;
+    for (T node : this.graph.keySet()) {
+      nodes[i] = node;
+      indices.put(node, i);
+      outOffsets[i + 1] = outOffsets[i] + this.graph.get(node).size();
+      inOffsets[i + 1] = inOffsets[i] + this.incoming.get(node).size();
+      i++;
+    }
+
+    int[] outTargets = new int[outOffsets[n]];
+    int[] inTargets = new int[inOffsets[n]];
+    int out = 0;
+    int in = 0;
+    for (Object node : nodes) {
+      for (T neighbor : this.graph.get(node)) {
+        outTargets[out++] = indices.get(neighbor);
+      }
+      for (T dependant : this.incoming.get(node)) {
+        inTargets[in++] = indices.get(dependant);
+      }
+    }
+    return new CompactGraph<T>(nodes, indices, outOffsets, outTargets, inOffsets, inTargets);
+  }
+
   @Override
   public DirectedAcyclicGraph<T> clone() {
       try {
@@ -181,9 +850,70 @@ public class DirectedAcyclicGraph<T> implements Cloneable {
           for (T key : cloned.graph.keySet()) {
               cloned.graph.put(key, new ArrayList<>(cloned.graph.get(key)));
           }
+          cloned.incoming = new HashMap<>(this.incoming);
+          for (T key : cloned.incoming.keySet()) {
+              cloned.incoming.put(key, new ArrayList<>(cloned.incoming.get(key)));
+          }
+          // edge handles can't be changed, so the clone shares them
+          cloned.outgoingEdges = new HashMap<>(this.outgoingEdges);
+          for (T key : cloned.outgoingEdges.keySet()) {
+              cloned.outgoingEdges.put(key, new ArrayList<>(cloned.outgoingEdges.get(key)));
+          }
+          cloned.order = new HashMap<>(this.order);
+          cloned.listeners = new ArrayList<Listener<T>>();
           return cloned;
       } catch (CloneNotSupportedException e) {
           throw new AssertionError();
       }
   }
+
+  /**
+   * Builds a graph from lists of nodes and edges,
+   * inserting all of the edges in one batch.
+   */
+  public static class Builder<T> {
+    private ArrayList<T> nodes = new ArrayList<T>();
+    private ArrayList<Edge<T>> edges = new ArrayList<Edge<T>>();
+
+    /**
+     * Add a node without any edges.
+     *
+     * @param node The node to add
+     * @return This builder
+     */
+    public Builder<T> addNode(T node) {
+      this.nodes.add(node);
+      return this;
+    }
+
+    /**
+     * Add an edge, and its nodes if they weren't added yet.
+     *
+     * @param connectFrom The node we are connecting from
+     * @param connectTo   The node we are connecting to
+     * @return This builder
+     */
+    public Builder<T> addEdge(T connectFrom, T connectTo) {
+      this.edges.add(new Edge<T>(connectFrom, connectTo));
+      return this;
+    }
+
+    /**
+     * Build the graph.
+     *
+     * @return The graph with all of the nodes and edges
+     * @throws IllegalStateException If the edges contain a cycle
+     */
+    public DirectedAcyclicGraph<T> build() {
+      DirectedAcyclicGraph<T> graph = new DirectedAcyclicGraph<T>(this.nodes.size());
+      for (T node : this.nodes) {
+        graph.insertNode(node);
+      }
+      List<T> cycle = graph.insertEdges(this.edges);
+      if (!cycle.isEmpty()) {
+        throw new IllegalStateException("The edges contain a cycle: " + cycle);
+      }
+      return graph;
+    }
+  }
 }
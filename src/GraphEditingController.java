@@ -1,9 +1,10 @@
 package taskChainPlanner;
 
 import java.util.HashMap;
-import java.util.Map;
-import javafx.scene.Group;
+import javafx.animation.AnimationTimer;
+import javafx.scene.Node;
 import javafx.scene.input.MouseButton;
+import javafx.scene.input.MouseEvent;
 import javafx.scene.control.TextField;
 import javafx.scene.layout.Pane;
 import javafx.geometry.Point2D;
@@ -37,18 +38,50 @@ public class GraphEditingController {
      * where the edge will be placed. A brief red edge is rendered when an
      * invalid edge is attempted to be inserted.
      *
-     * The whole graph is rendered on every change to the graph, and the
-     * event handlers are reset each time subsequently. While this is not
-     * efficient, it massively simplifies the implementation and is not
-     * causing any noticeable performance issues as of now.
+     * The renderer follows the graph's structural changes itself, so the
+     * commands only edit the graph, and tell the renderer about changes to
+     * a task's name or position.
+     *
+     * The graph is drawn by one of two views, chosen when the controller is
+     * made: the node based GraphRenderer or the CanvasGraphRenderer. Either
+     * way, the only event handlers are the pane's, set up once, which find
+     * the task or edge an event landed on and dispatch it to the task, edge
+     * or pane commands. The target is the task or edge held as user data by
+     * the picked node, if there is one, or else the task found through the
+     * spatial index or the edge found by the view.
+     *
+     * The views only draw what is in view, so the translation and scale of the
+     * graph are passed to them whenever it is panned, zoomed or resized. Zoom
+     * keeps the point under the cursor in place.
+     *
+     * Mouse drags can fire many times per frame, so dragging a node, panning,
+     * zooming and drawing the temporary edge only record where the cursor is,
+     * and an AnimationTimer applies the latest of them once per pulse. Dragging
+     * a node then only moves that task and its edges once a frame. The timer
+     * runs while there is something to apply and stops itself after.
      */
     private DirectedAcyclicGraph<Task> graph;
     private Pane graphPane;
-    private Group group;
-    private GraphRenderer graphRenderer;
+    private GraphView graphRenderer;
+    private SpatialIndex spatialIndex;
     private double scaleValue = 1.0;
+    private double translateX = 0;
+    private double translateY = 0;
     private double zoomIntensity = 0.002;
     private double[] lastMouseCoordinates = new double[2];
+    private double[] grabOffset = new double[2];
+    private double[] dragCoordinates = new double[2];
+    private boolean movePending = false;
+    private boolean tempEdgePending = false;
+    private boolean viewportPending = false;
+    private AnimationTimer pulse = new AnimationTimer() {
+        @Override
+        public void handle(long now) {
+            if (!applyPending()) {
+                stop();
+            }
+        }
+    };
 
     private int taskCounter = 0;
     private boolean movingNode = false;
@@ -61,130 +94,193 @@ public class GraphEditingController {
      *
      * @param graph The graph to be edited.
      * @param graphPane The pane to render the graph on.
+     * @param useCanvas Whether to draw the graph on a canvas rather than with a node per task and edge.
      */
-    public GraphEditingController(DirectedAcyclicGraph<Task> graph, Pane graphPane) {
+    public GraphEditingController(DirectedAcyclicGraph<Task> graph, Pane graphPane, boolean useCanvas) {
         this.graph = graph;
         this.graphPane = graphPane;
         graphPane.getChildren().clear();
 
-        this.group = new Group();
-        graphPane.getChildren().add(this.group);
-
-        this.graphRenderer = new GraphRenderer(graph, group);
-        graphRenderer.renderGraph(true);
-        setupGraphEventHandlers();
+        this.spatialIndex = new SpatialIndex(graph, 2 * GraphView.TASK_RADIUS);
+        if (useCanvas) {
+            this.graphRenderer = new CanvasGraphRenderer(graph, graphPane, spatialIndex);
+        } else {
+            this.graphRenderer = new GraphRenderer(graph, graphPane, spatialIndex);
+        }
+        updateViewport();
+        graphRenderer.renderGraph();
         setupGraphPaneEventHandlers();
+        graphPane.widthProperty().addListener((obs, oldWidth, newWidth) -> updateViewport());
+        graphPane.heightProperty().addListener((obs, oldHeight, newHeight) -> updateViewport());
+    }
+
+    /**
+     * Tell the renderer which part of the graph the pane shows,
+     * after the pane is resized, panned or zoomed.
+     */
+    private void updateViewport() {
+        graphRenderer.setViewport(translateX, translateY, scaleValue);
     }
 
     /**
-     * Rerender the graph and reset the event handlers.
+     * Apply the drag, pan, zoom and temporary edge updates recorded since the last pulse.
+     *
+     * @return Whether there was anything to apply.
      */
-    private void setupGraphEventHandlers() {
-        Map<Task, Group> taskGroups = graphRenderer.taskGroups();
-        Map<DirectedAcyclicGraph.Edge<Task>, Group> edgeLines = graphRenderer.edgeLines();
-        for (Task tasks : graphRenderer.taskGroups().keySet()) {
-            setupTaskEventHandlers(taskGroups.get(tasks), tasks);
+    private boolean applyPending() {
+        boolean applied = viewportPending || movePending || tempEdgePending;
+        if (viewportPending) {
+            viewportPending = false;
+            updateViewport();
+        }
+        if (movePending) {
+            movePending = false;
+            if (movingNode && selectedTask != null) {
+                Point2D mousePoint = sceneToGraph(dragCoordinates[0], dragCoordinates[1]);
+                selectedTask.setPos(mousePoint.getX() + grabOffset[0], mousePoint.getY() + grabOffset[1]);
+                graphRenderer.updateTask(selectedTask);
+            }
         }
-        for (DirectedAcyclicGraph.Edge<Task> edge : graphRenderer.edgeLines().keySet()) {
-            setupEdgeEventHandlers(edge, edgeLines.get(edge));
+        if (tempEdgePending) {
+            tempEdgePending = false;
+            if (insertingEdge && startTask != null) {
+                Point2D mousePoint = sceneToGraph(dragCoordinates[0], dragCoordinates[1]);
+                graphRenderer.renderTempEdge(startTask, mousePoint.getX(), mousePoint.getY());
+            }
         }
+        return applied;
     }
 
     /**
-     * Set up the event handlers for a task node.
+     * Convert scene coordinates to graph coordinates.
      *
-     * The event handlers are as follows:
+     * @param sceneX The x coordinate in the scene.
+     * @param sceneY The y coordinate in the scene.
+     * @return The point in graph coordinates.
+     */
+    private Point2D sceneToGraph(double sceneX, double sceneY) {
+        Point2D panePoint = graphPane.sceneToLocal(sceneX, sceneY);
+        return new Point2D((panePoint.getX() - translateX) / scaleValue, (panePoint.getY() - translateY) / scaleValue);
+    }
+
+    /**
+     * Stop rendering the graph's changes, once the view is no longer shown.
+     */
+    public void detach() {
+        pulse.stop();
+        graphRenderer.detach();
+        spatialIndex.detach();
+    }
+
+    /**
+     * Find the task or edge a mouse event landed on.
+     *
+     * @param event The mouse event.
+     * @return The task or edge, or null if the event landed on the pane itself.
+     */
+    private Object targetOf(MouseEvent event) {
+        for (Node node = event.getPickResult().getIntersectedNode(); node != null && node != graphPane; node = node.getParent()) {
+            if (node.getUserData() instanceof Task || node.getUserData() instanceof DirectedAcyclicGraph.Edge) {
+                return node.getUserData();
+            }
+        }
+        Task task = findTaskAt(event.getSceneX(), event.getSceneY());
+        if (task != null) {
+            return task;
+        }
+        Point2D graphPoint = sceneToGraph(event.getSceneX(), event.getSceneY());
+        return graphRenderer.edgeAt(graphPoint.getX(), graphPoint.getY());
+    }
+
+    /**
+     * Handle a click on a task:
      * - Remove node on double right click
      * - Edit node name on double left click
-     * - Start edge insertion on right press
-     * - Start moving node on left press
-     * - Insert edge on right release
      *
-     * @param taskGroup The group representing the task node.
-     * @param task The task node.
+     * @param task The task clicked.
+     * @param e The mouse event.
      */
-    private void setupTaskEventHandlers(Group taskGroup, Task task) {
-        taskGroup.setOnMouseClicked(e -> {
-            // remove node on double right click
-            if (e.getButton() == MouseButton.SECONDARY && e.getClickCount() == 2) {
-                graph.removeNode(task);
-                graphRenderer.renderGraph(true);
-                setupGraphEventHandlers();
-            }
-            // edit node name on double left click
-            if (e.getButton() == MouseButton.PRIMARY && e.getClickCount() == 2) {
-                TextField nameField = graphRenderer.renderEditableTaskName(task);
-                nameField.requestFocus();
+    private void taskClicked(Task task, MouseEvent e) {
+        // remove node on double right click
+        if (e.getButton() == MouseButton.SECONDARY && e.getClickCount() == 2) {
+            graph.removeNode(task);
+        }
+        // edit node name on double left click
+        if (e.getButton() == MouseButton.PRIMARY && e.getClickCount() == 2) {
+            TextField nameField = graphRenderer.renderEditableTaskName(task);
+            nameField.requestFocus();
 
-                // update task name on enter
-                nameField.setOnAction(event -> {
+            // update task name on enter
+            nameField.setOnAction(event -> {
+                task.setName(nameField.getText());
+                graphRenderer.updateTask(task);
+            });
+            // or update task name on focus loss
+            nameField.focusedProperty().addListener((obs, oldVal, newVal) -> {
+                if (!newVal) {
                     task.setName(nameField.getText());
-                    graphRenderer.renderGraph(true);
-                    setupGraphEventHandlers();
-                });
-                // or update task name on focus loss
-                nameField.focusedProperty().addListener((obs, oldVal, newVal) -> {
-                    if (!newVal) {
-                        task.setName(nameField.getText());
-                        graphRenderer.renderGraph(true);
-                        setupGraphEventHandlers();
-                    }
-                });
-                e.consume();
-            }
-        });
+                    graphRenderer.updateTask(task);
+                }
+            });
+        }
+    }
 
-        taskGroup.setOnMousePressed(e -> {
-            // start edge insertion on right button press
-            if (e.getButton() == MouseButton.SECONDARY) {
-                insertingEdge = true;
-                startTask = task;
-            } else if (e.getButton() == MouseButton.PRIMARY) {
-                // store the last coordinates for moving the node on left button press
-                lastMouseCoordinates[0] = e.getSceneX();
-                lastMouseCoordinates[1] = e.getSceneY();
-                movingNode = true;
-                selectedTask = task;
-            }
-        });
+    /**
+     * Handle a press on a task:
+     * - Start edge insertion on right press
+     * - Start moving node on left press
+     *
+     * @param task The task pressed.
+     * @param e The mouse event.
+     */
+    private void taskPressed(Task task, MouseEvent e) {
+        // start edge insertion on right button press
+        if (e.getButton() == MouseButton.SECONDARY) {
+            insertingEdge = true;
+            startTask = task;
+        } else if (e.getButton() == MouseButton.PRIMARY) {
+            // keep the node where it was grabbed relative to the cursor while moving it
+            Point2D mousePoint = sceneToGraph(e.getSceneX(), e.getSceneY());
+            grabOffset[0] = task.x() - mousePoint.getX();
+            grabOffset[1] = task.y() - mousePoint.getY();
+            movingNode = true;
+            selectedTask = task;
+        }
+    }
 
-        taskGroup.setOnMouseReleased(e -> {
-            // insert edge on right button release
-            if (e.getButton() == MouseButton.SECONDARY && insertingEdge) {
-                insertingEdge = false;
-                Task endTask = findTaskAt(e.getSceneX(), e.getSceneY());
-                graphRenderer.clearTempEdge();
-                if (endTask != null && endTask != startTask) {
-                    DirectedAcyclicGraph.Edge<Task> edge = graph.insertEdge(startTask, endTask);
-                    if (edge != null) {
-                        graphRenderer.renderGraph(true);
-                        setupGraphEventHandlers();
-                    } else {
-                        graphRenderer.renderInvalidEdge(startTask, endTask);
-                    }
+    /**
+     * Handle a release over a task:
+     * - Insert edge on right release
+     *
+     * @param e The mouse event.
+     */
+    private void taskReleased(MouseEvent e) {
+        // insert edge on right button release
+        if (e.getButton() == MouseButton.SECONDARY && insertingEdge) {
+            insertingEdge = false;
+            Task endTask = findTaskAt(e.getSceneX(), e.getSceneY());
+            graphRenderer.clearTempEdge();
+            if (endTask != null && endTask != startTask) {
+                DirectedAcyclicGraph.Edge<Task> edge = graph.insertEdge(startTask, endTask);
+                if (edge == null) {
+                    graphRenderer.renderInvalidEdge(startTask, endTask);
                 }
             }
-        });
+        }
     }
 
     /**
-     * Set up the event handlers for an edge line.
-     *
-     * The event handlers are as follows:
+     * Handle a click on an edge:
      * - Remove edge on double right click
      *
-     * @param edge The edge to set up the event handlers for.
-     * @param edgeLine The line representing the edge.
+     * @param edge The edge clicked.
+     * @param e The mouse event.
      */
-    private void setupEdgeEventHandlers(DirectedAcyclicGraph.Edge<Task> edge, Group edgeLine) {
-        edgeLine.setOnMouseClicked(e -> {
-            // remove edge on double right click
-            if (e.getButton() == MouseButton.SECONDARY && e.getClickCount() == 2) {
-                graph.removeEdge(edge.from, edge.to);
-                graphRenderer.renderGraph(true);
-                setupGraphEventHandlers();
-            }
-        });
+    private void edgeClicked(DirectedAcyclicGraph.Edge<?> edge, MouseEvent e) {
+        // remove edge on double right click
+        if (e.getButton() == MouseButton.SECONDARY && e.getClickCount() == 2) {
+            graph.removeEdge((Task) edge.from, (Task) edge.to);
+        }
     }
 
     /**
@@ -194,32 +290,50 @@ public class GraphEditingController {
      * - Zoom in/out on scroll
      * - Insert node on double left click
      * - Pan on left drag
+     *
+     * These are the only event handlers, so they first find the task or
+     * edge under the cursor and dispatch to its commands:
+     * - Tasks: remove, edit name, move, and insert edges
+     * - Edges: remove
      */
     private void setupGraphPaneEventHandlers() {
         // zoom on scroll
         graphPane.setOnScroll((ScrollEvent event) -> {
             double zoomFactor = Math.exp(event.getDeltaY() * zoomIntensity);
             scaleValue *= zoomFactor;
-            group.setScaleX(scaleValue);
-            group.setScaleY(scaleValue);
+            // zoom around the cursor, keeping the point under it in place
+            translateX = event.getX() - (event.getX() - translateX) * zoomFactor;
+            translateY = event.getY() - (event.getY() - translateY) * zoomFactor;
+            viewportPending = true;
+            pulse.start();
         });
 
         graphPane.setOnMouseClicked(event -> {
+            Object target = targetOf(event);
+            if (target instanceof Task) {
+                taskClicked((Task) target, event);
+                return;
+            }
+            if (target instanceof DirectedAcyclicGraph.Edge) {
+                edgeClicked((DirectedAcyclicGraph.Edge<?>) target, event);
+                return;
+            }
             // insert node at cursor position on double left click
             if (event.getButton() == MouseButton.PRIMARY && event.getClickCount() == 2) {
-                Point2D mousePoint = group.sceneToLocal(event.getSceneX(), event.getSceneY());
+                Point2D mousePoint = sceneToGraph(event.getSceneX(), event.getSceneY());
                 double x = mousePoint.getX();
                 double y = mousePoint.getY();
                 Task newTask = new Task(x, y);
-                graph.insertNode(newTask);
                 newTask.setName("New Task " + taskCounter++);
-
-                graphRenderer.renderGraph(true);
-                setupGraphEventHandlers();
+                graph.insertNode(newTask);
             }
         });
 
         graphPane.setOnMousePressed(event -> {
+            Object target = targetOf(event);
+            if (target instanceof Task) {
+                taskPressed((Task) target, event);
+            }
             // store cursor position on left button press for panning
             if (event.getButton() == MouseButton.PRIMARY) {
                 lastMouseCoordinates[0] = event.getX();
@@ -230,34 +344,35 @@ public class GraphEditingController {
         graphPane.setOnMouseDragged(event -> {
             // move node on left button drag
             if (movingNode && selectedTask != null) {
-                double deltaX = event.getSceneX() - lastMouseCoordinates[0];
-                double deltaY = event.getSceneY() - lastMouseCoordinates[1];
-                selectedTask.setPos(selectedTask.x() + deltaX, selectedTask.y() + deltaY);
-                lastMouseCoordinates[0] = event.getSceneX();
-                lastMouseCoordinates[1] = event.getSceneY();
-
-                graphRenderer.renderGraph(true);
-                setupGraphEventHandlers();
+                dragCoordinates[0] = event.getSceneX();
+                dragCoordinates[1] = event.getSceneY();
+                movePending = true;
+                pulse.start();
 
             // pan the graph on left button drag when not moving a node
             } else if (!movingNode && event.getButton() == MouseButton.PRIMARY) {
                 double deltaX = event.getX() - lastMouseCoordinates[0];
                 double deltaY = event.getY() - lastMouseCoordinates[1];
-                group.setTranslateX(group.getTranslateX() + deltaX);
-                group.setTranslateY(group.getTranslateY() + deltaY);
+                translateX += deltaX;
+                translateY += deltaY;
+                viewportPending = true;
+                pulse.start();
                 lastMouseCoordinates[0] = event.getX();
                 lastMouseCoordinates[1] = event.getY();
 
             // render temp edge on right button drag when inserting edge
             } else if (event.getButton() == MouseButton.SECONDARY && insertingEdge && startTask != null) {
-                Point2D mousePoint = group.sceneToLocal(event.getSceneX(), event.getSceneY());
-                double x = mousePoint.getX();
-                double y = mousePoint.getY();
-                graphRenderer.renderTempEdge(startTask, x, y);
+                dragCoordinates[0] = event.getSceneX();
+                dragCoordinates[1] = event.getSceneY();
+                tempEdgePending = true;
+                pulse.start();
             }
         });
 
         graphPane.setOnMouseReleased(event -> {
+            // finish the drag where it was released
+            applyPending();
+            taskReleased(event);
             // reset edge insertion on right button release
             if (event.getButton() == MouseButton.SECONDARY && insertingEdge) {
                 insertingEdge = false;
@@ -274,17 +389,13 @@ public class GraphEditingController {
 
     /**
      * Find the task at the given scene coordinates.
+     * Only the tasks in the spatial index's cells around the point are checked.
      * @param sceneX The x coordinate.
      * @param sceneY The y coordinate.
-     * @return The task at the given coordinates, or null if none.
+     * @return The closest task at the given coordinates, or null if none.
      */
     private Task findTaskAt(double sceneX, double sceneY) {
-        Point2D localPoint = group.sceneToLocal(sceneX, sceneY);
-        for (Task task : graph.nodes()) {
-            if (Math.hypot(task.x() - localPoint.getX(), task.y() - localPoint.getY()) <= graphRenderer.taskRadius()) {
-                return task;
-            }
-        }
-        return null;
+        Point2D graphPoint = sceneToGraph(sceneX, sceneY);
+        return spatialIndex.nearest(graphPoint.getX(), graphPoint.getY(), graphRenderer.taskRadius());
     }
 }
@@ -1,36 +1,56 @@
 package taskChainPlanner;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.Timer;
 import java.util.TimerTask;
 import javafx.application.Platform;
 import javafx.scene.Group;
+import javafx.scene.layout.Pane;
 import javafx.scene.paint.Color;
 import javafx.scene.shape.Circle;
 import javafx.scene.shape.Polygon;
 import javafx.scene.shape.Line;
 import javafx.scene.text.Text;
 import javafx.scene.text.TextAlignment;
+import javafx.scene.transform.Scale;
 import javafx.scene.control.TextField;
 import javafx.geometry.VPos;
 
-public class GraphRenderer {
+public class GraphRenderer implements GraphView, DirectedAcyclicGraph.Listener<Task> {
     /**
      * The GraphRenderer is responsible for rendering the visual representation
      * of the graph based on the current state, as well as providing visual feedback
      * for certain user actions.
      *
-     * The graph is rerendered in whole each time the renderGraph method is called,
-     * which isn't the most efficient way to do it, but it's far more simple and
-     * isn't a problem at this scale.
+     * The graph is rendered in whole once, and after that the renderer keeps
+     * the rendered groups and only changes the ones an edit affects. It listens
+     * to the graph, so inserting or removing a task or an edge adds or removes
+     * just its group, and removing a task removes its edges with it. Changes
+     * that aren't structural, like renaming, moving or changing the state of a
+     * task, are rendered by updateTask, which updates the task's group and its
+     * incident edges in place. Editing costs the size of the change, not of
+     * the graph. Each group holds the task or edge it represents as its user
+     * data, so the controller can tell what an event landed on.
+     *
+     * Only the tasks in the viewport set by setViewport are rendered, found
+     * through the spatial index, along with the edges to and from them, so
+     * the scene holds what is on screen rather than the whole graph. An edge
+     * passing through the viewport with both of its tasks outside it is not
+     * rendered. Zoomed out below LOW_DETAIL_SCALE, where the text is too small
+     * to read, tasks are rendered as plain dots and edges as plain lines.
      *
      * The graph is rendered as a collection of circles representing tasks, and lines
      * representing the dependencies between tasks. The tasks are stored in a map
      * that maps each task to its corresponding group, which contains the visual
      * representation of the task. The edges are stored in a similar map, mapping
-     * each edge to its corresponding line.
+     * each edge to its corresponding line. Edges are kept in a layer below
+     * the tasks, so both can be appended and removed without reordering the other.
      *
      * The renderTempEdge and renderInvalidEdge methods do not respond to the graph
      * state, but are used to provide visual feedback for the user when they are
@@ -40,11 +60,18 @@ public class GraphRenderer {
      * a cycle in the graph.
      */
     private DirectedAcyclicGraph<Task> graph;
-    private Group graphGroup;
-    private int taskRadius = 60;
+    private Pane graphPane;
+    private Group graphGroup = new Group();
+    private Group edgeLayer = new Group();
+    private Group taskLayer = new Group();
+    private Scale zoom = new Scale(1.0, 1.0, 0, 0);
+    private int taskRadius = TASK_RADIUS;
     private int arrowSize = 20;
     private Map<Task, Group> taskGroups = new HashMap<>();
     private Map<DirectedAcyclicGraph.Edge<Task>, Group> edgeLines = new HashMap<>();
+    private SpatialIndex spatialIndex;
+    private double[] viewport = null;
+    private boolean lowDetail = false;
     private Group tempEdge = null;
     private int invalidEdgeTimeout = 500;
 
@@ -52,31 +79,235 @@ public class GraphRenderer {
      * Constructor for the GraphRenderer class.
      *
      * @param graph The graph to render.
-     * @param graphGroup The group to render the graph in.
+     * @param graphPane The pane to render the graph on.
+     * @param spatialIndex The index of the graph's tasks, to find the ones in view.
      */
-    public GraphRenderer(DirectedAcyclicGraph<Task> graph, Group graphGroup) {
+    public GraphRenderer(DirectedAcyclicGraph<Task> graph, Pane graphPane, SpatialIndex spatialIndex) {
         this.graph = graph;
-        this.graphGroup = graphGroup;
+        this.graphPane = graphPane;
+        this.spatialIndex = spatialIndex;
+        graphGroup.getTransforms().add(zoom);
+        graphGroup.getChildren().addAll(edgeLayer, taskLayer);
+        graphPane.getChildren().add(graphGroup);
+        graph.addListener(this);
+    }
+
+    @Override
+    public void detach() {
+        graph.removeListener(this);
+    }
+
+    /**
+     * Positions the graph group on the pane, and keeps only the tasks and
+     * edges in the pane's visible area rendered.
+     *
+     * @param translateX The x-coordinate of the graph's origin on the pane.
+     * @param translateY The y-coordinate of the graph's origin on the pane.
+     * @param scale The scale the graph is shown at.
+     */
+    @Override
+    public void setViewport(double translateX, double translateY, double scale) {
+        graphGroup.setTranslateX(translateX);
+        graphGroup.setTranslateY(translateY);
+        zoom.setX(scale);
+        zoom.setY(scale);
+        viewport = new double[] {
+            -translateX / scale, -translateY / scale,
+            (graphPane.getWidth() - translateX) / scale, (graphPane.getHeight() - translateY) / scale
+        };
+        boolean detail = scale < LOW_DETAIL_SCALE;
+        if (detail != lowDetail) {
+            lowDetail = detail;
+            for (Group taskGroup : taskGroups.values()) {
+                applyDetail(taskGroup, true);
+            }
+            for (Group edgeLine : edgeLines.values()) {
+                applyDetail(edgeLine, false);
+            }
+        }
+        cull();
     }
 
     /**
      * Renders the graph in the graphGroup.
+     */
+    @Override
+    public void renderGraph() {
+        taskGroups.clear();
+        edgeLines.clear();
+        edgeLayer.getChildren().clear();
+        taskLayer.getChildren().clear();
+        cull();
+    }
+
+    @Override
+    public DirectedAcyclicGraph.Edge<Task> edgeAt(double x, double y) {
+        for (DirectedAcyclicGraph.Edge<Task> edge : edgeLines.keySet()) {
+            if (GraphView.segmentDistance(x, y, edge.from.x(), edge.from.y(), edge.to.x(), edge.to.y()) <= EDGE_WIDTH / 2) {
+                return edge;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Brings the rendered tasks and edges in line with the viewport, adding
+     * the ones that came into view and removing the ones that left it.
+     */
+    private void cull() {
+        Collection<Task> visible = viewport == null
+            ? graph.nodes()
+            : spatialIndex.query(viewport[0] - taskRadius, viewport[1] - taskRadius,
+                viewport[2] + taskRadius, viewport[3] + taskRadius);
+        Set<Task> visibleTasks = new HashSet<>(visible);
+
+        List<Task> hidden = new ArrayList<>();
+        for (Task task : taskGroups.keySet()) {
+            if (!visibleTasks.contains(task)) {
+                hidden.add(task);
+            }
+        }
+        for (Task task : hidden) {
+            taskLayer.getChildren().remove(taskGroups.remove(task));
+        }
+        for (Task task : hidden) {
+            renderIncidentEdges(task);
+        }
+        for (Task task : visible) {
+            if (!taskGroups.containsKey(task)) {
+                showTask(task);
+                renderIncidentEdges(task);
+            }
+        }
+    }
+
+    /**
+     * @param task The task to check.
+     * @return Whether any part of the task is in the viewport.
+     */
+    private boolean inViewport(Task task) {
+        return viewport == null
+            || (task.x() + taskRadius >= viewport[0] && task.x() - taskRadius <= viewport[2]
+                && task.y() + taskRadius >= viewport[1] && task.y() - taskRadius <= viewport[3]);
+    }
+
+    /**
+     * Renders a task's group and keeps track of it. The group carries the task
+     * as its user data, which is how the pane's handlers find the task clicked.
      *
-     * @param reset Whether to reset the graph before rendering.
+     * @param task The task to render.
      */
-    public void renderGraph(boolean reset) {
-        if (reset) {
-            taskGroups.clear();
-            edgeLines.clear();
-            graphGroup.getChildren().clear();
+    private void showTask(Task task) {
+        Group taskGroup = renderTask(task);
+        taskGroups.put(task, taskGroup);
+    }
+
+    /**
+     * Brings the edges to and from a task in line with its rendering. An edge
+     * is rendered while either of its tasks is, and placed at their positions.
+     *
+     * @param task The task whose edges to render.
+     */
+    private void renderIncidentEdges(Task task) {
+        for (DirectedAcyclicGraph.Edge<Task> edge : graph.edgesFrom(task)) {
+            renderEdgeBetween(edge);
         }
-        for (Task node : graph.nodes()) {
-            Group taskGroup = renderTask(node);
-            taskGroups.put(node, taskGroup);
+        for (Task dependant : graph.dependants(task)) {
+            renderEdgeBetween(graph.edge(dependant, task));
         }
-        for (DirectedAcyclicGraph.Edge<Task> edge : graph.edges()) {
-            Group edgeLine = renderEdge(edge);
+    }
+
+    /**
+     * Renders, moves or removes the edge between two tasks, depending on
+     * whether either of the tasks is rendered.
+     *
+     * @param edge The graph's handle of the edge.
+     */
+    private void renderEdgeBetween(DirectedAcyclicGraph.Edge<Task> edge) {
+        Task from = edge.from;
+        Task to = edge.to;
+        Group edgeLine = edgeLines.get(edge);
+        boolean shown = taskGroups.containsKey(from) || taskGroups.containsKey(to);
+        if (edgeLine == null && shown) {
+            edgeLine = renderEdge(edge);
             edgeLines.put(edge, edgeLine);
+        } else if (edgeLine != null && !shown) {
+            edgeLayer.getChildren().remove(edgeLines.remove(edge));
+        } else if (edgeLine != null) {
+            placeEdge(edgeLine, from, to);
+        }
+    }
+
+    @Override
+    public void nodeInserted(Task task) {
+        if (inViewport(task)) {
+            showTask(task);
+        }
+    }
+
+    @Override
+    public void nodeRemoved(Task task) {
+        Group taskGroup = taskGroups.remove(task);
+        if (taskGroup != null) {
+            taskLayer.getChildren().remove(taskGroup);
+        }
+    }
+
+    @Override
+    public void edgeInserted(Task from, Task to) {
+        renderEdgeBetween(graph.edge(from, to));
+    }
+
+    @Override
+    public void edgeRemoved(Task from, Task to) {
+        Group edgeLine = edgeLines.remove(new DirectedAcyclicGraph.Edge<>(from, to));
+        if (edgeLine != null) {
+            edgeLayer.getChildren().remove(edgeLine);
+        }
+    }
+
+    /**
+     * Updates the rendering of a task whose name, state or position changed,
+     * along with the edges to and from it. A task moved out of the viewport
+     * stops being rendered, and one moved into it starts.
+     *
+     * @param task The task to update.
+     */
+    @Override
+    public void updateTask(Task task) {
+        Group taskGroup = taskGroups.get(task);
+        if (!inViewport(task)) {
+            if (taskGroup != null) {
+                taskLayer.getChildren().remove(taskGroups.remove(task));
+            }
+        } else if (taskGroup == null) {
+            showTask(task);
+        } else {
+            // the name may be being edited, in which case it is shown as a text field
+            if (!(taskGroup.getChildren().get(1) instanceof Text)) {
+                taskGroup.getChildren().set(1, makeTaskText());
+                applyDetail(taskGroup, true);
+            }
+            placeTask(task, taskGroup);
+        }
+        renderIncidentEdges(task);
+    }
+
+    /**
+     * Shows or hides the details of a task group or edge line for the current
+     * level of detail: the name, state and outline of a task, and the arrow
+     * head of an edge.
+     *
+     * @param group The task group or edge line.
+     * @param isTask Whether the group is a task group rather than an edge line.
+     */
+    private void applyDetail(Group group, boolean isTask) {
+        if (isTask) {
+            ((Circle) group.getChildren().get(0)).setStroke(lowDetail ? null : Color.BLACK);
+            group.getChildren().get(1).setVisible(!lowDetail);
+            group.getChildren().get(2).setVisible(!lowDetail);
+        } else {
+            group.getChildren().get(1).setVisible(!lowDetail);
         }
     }
 
@@ -88,30 +319,53 @@ public class GraphRenderer {
      */
     private Group makeTask(Task task) {
         Group taskGroup = new Group();
+        taskGroup.setUserData(task);
 
-        Circle circle = new Circle(task.x(), task.y(), taskRadius);
+        Circle circle = new Circle(taskRadius);
         circle.setFill(Color.LIGHTBLUE);
         circle.setStroke(Color.BLACK);
 
-        Text text = new Text(task.name());
+        taskGroup.getChildren().addAll(circle, makeTaskText(), makeTaskText());
+        placeTask(task, taskGroup);
+        applyDetail(taskGroup, true);
+
+        return taskGroup;
+    }
+
+    /**
+     * Makes a centered text for a task's name or state.
+     *
+     * @return The text.
+     */
+    private Text makeTaskText() {
+        Text text = new Text();
         text.setTextOrigin(VPos.CENTER);
         text.setTextAlignment(TextAlignment.CENTER);
+        text.setWrappingWidth(2 * taskRadius);
+        return text;
+    }
+
+    /**
+     * Moves the circle, name and state of a task group to the task's
+     * position, and shows the task's current name and state.
+     *
+     * @param task The task the group represents.
+     * @param taskGroup The group representing the task.
+     */
+    private void placeTask(Task task, Group taskGroup) {
+        Circle circle = (Circle) taskGroup.getChildren().get(0);
+        circle.setCenterX(task.x());
+        circle.setCenterY(task.y());
 
+        Text text = (Text) taskGroup.getChildren().get(1);
+        text.setText(task.name());
         text.setLayoutX(task.x() - taskRadius);
         text.setLayoutY(task.y());
-        text.setWrappingWidth(2 * taskRadius);
-
-        Text stateText = new Text(task.taskState());
-        stateText.setTextOrigin(VPos.CENTER);
-        stateText.setTextAlignment(TextAlignment.CENTER);
 
+        Text stateText = (Text) taskGroup.getChildren().get(2);
+        stateText.setText(task.taskState());
         stateText.setLayoutX(task.x() - taskRadius);
         stateText.setLayoutY(task.y() + taskRadius / 2);
-        stateText.setWrappingWidth(2 * taskRadius);
-
-        taskGroup.getChildren().addAll(circle, text, stateText);
-
-        return taskGroup;
     }
 
     /**
@@ -122,7 +376,7 @@ public class GraphRenderer {
      */
     private Group renderTask(Task task) {
         Group taskGroup = makeTask(task);
-        graphGroup.getChildren().add(taskGroup);
+        taskLayer.getChildren().add(taskGroup);
         return taskGroup;
     }
 
@@ -136,9 +390,47 @@ public class GraphRenderer {
      * @return The line representing the edge.
      */
     public Group makeEdge(double x1, double y1, double x2, double y2, Color color) {
-        Line line = new Line(x1, y1, x2, y2);
+        Line line = new Line();
         line.setStroke(color);
-        line.setStrokeWidth(5);
+        line.setStrokeWidth(EDGE_WIDTH);
+
+        Polygon arrowHead = new Polygon();
+        arrowHead.setFill(color);
+
+        Group edgeGroup = new Group();
+        edgeGroup.getChildren().addAll(line, arrowHead);
+        placeEdge(edgeGroup, x1, y1, x2, y2);
+        return edgeGroup;
+    }
+
+    /**
+     * Moves an edge line between two tasks to their current positions.
+     *
+     * @param edgeGroup The group representing the edge, or null if it isn't rendered.
+     * @param source The task the edge starts from.
+     * @param target The task the edge ends at.
+     */
+    private void placeEdge(Group edgeGroup, Task source, Task target) {
+        if (edgeGroup != null) {
+            placeEdge(edgeGroup, source.x(), source.y(), target.x(), target.y());
+        }
+    }
+
+    /**
+     * Moves an edge line and its arrow head between two points.
+     *
+     * @param edgeGroup The group representing the edge.
+     * @param x1 The x-coordinate of the first point.
+     * @param y1 The y-coordinate of the first point.
+     * @param x2 The x-coordinate of the second point.
+     * @param y2 The y-coordinate of the second point.
+     */
+    private void placeEdge(Group edgeGroup, double x1, double y1, double x2, double y2) {
+        Line line = (Line) edgeGroup.getChildren().get(0);
+        line.setStartX(x1);
+        line.setStartY(y1);
+        line.setEndX(x2);
+        line.setEndY(y2);
 
         double angle = Math.atan2(y2 - y1, x2 - x1);
 
@@ -146,25 +438,20 @@ public class GraphRenderer {
         double arrowX = x2 - arrowLength * Math.cos(angle);
         double arrowY = y2 - arrowLength * Math.sin(angle);
 
-        Polygon arrowHead = new Polygon();
-        arrowHead.getPoints().addAll(
+        Polygon arrowHead = (Polygon) edgeGroup.getChildren().get(1);
+        arrowHead.getPoints().setAll(
             arrowX, arrowY,
             arrowX - arrowSize * Math.cos(angle - Math.PI / 6),
             arrowY - arrowSize * Math.sin(angle - Math.PI / 6),
             arrowX - arrowSize * Math.cos(angle + Math.PI / 6),
             arrowY - arrowSize * Math.sin(angle + Math.PI / 6)
         );
-        arrowHead.setFill(color);
-
-        Group edgeGroup = new Group();
-        edgeGroup.getChildren().addAll(line, arrowHead);
-        return edgeGroup;
     }
 
     /**
      * Renders an edge in the graphGroup.
      *
-     * Edges are always rendered below the tasks, so they are added at index 0.
+     * Edges are always rendered below the tasks, so they are added to the edge layer.
      *
      * @param edge The edge to render.
      * @return The line representing the edge.
@@ -173,7 +460,9 @@ public class GraphRenderer {
         Task source = edge.from;
         Task target = edge.to;
         Group edgeLine = makeEdge(source.x(), source.y(), target.x(), target.y(), Color.GRAY);
-        graphGroup.getChildren().add(0, edgeLine);
+        edgeLine.setUserData(edge);
+        applyDetail(edgeLine, false);
+        edgeLayer.getChildren().add(edgeLine);
         return edgeLine;
     }
 
@@ -184,9 +473,11 @@ public class GraphRenderer {
      * @param x The x-coordinate of the end of the edge.
      * @param y The y-coordinate of the end of the edge.
      */
+    @Override
     public void renderTempEdge(Task startTask, double x, double y) {
         if (tempEdge != null) {
-            graphGroup.getChildren().remove(tempEdge);
+            placeEdge(tempEdge, startTask.x(), startTask.y(), x, y);
+            return;
         }
         tempEdge = makeEdge(startTask.x(), startTask.y(), x, y, Color.GRAY);
         graphGroup.getChildren().add(0, tempEdge);
@@ -199,6 +490,7 @@ public class GraphRenderer {
      * @param startTask The task the edge starts from.
      * @param endTask The task the edge ends at.
      */
+    @Override
     public void renderInvalidEdge(Task startTask, Task endTask) {
         Group invalidEdge = makeEdge(startTask.x(), startTask.y(), endTask.x(), endTask.y(), Color.RED);
         graphGroup.getChildren().add(0, invalidEdge);
@@ -217,6 +509,7 @@ public class GraphRenderer {
     /**
      * Clears the temporary edge from the graphGroup.
      */
+    @Override
     public void clearTempEdge() {
         if (tempEdge != null) {
             graphGroup.getChildren().remove(tempEdge);
@@ -230,6 +523,7 @@ public class GraphRenderer {
      * @param task The task to render the editable name for.
      * @return The text field representing the editable name.
      */
+    @Override
     public TextField renderEditableTaskName(Task task) {
         Group taskGroup = taskGroups.get(task);
         taskGroup.getChildren().remove(1);
@@ -245,21 +539,14 @@ public class GraphRenderer {
     }
 
     /**
-     * @return The task group radius constant.
-     */
-    public int taskRadius() {
-        return taskRadius;
-    }
-
-    /**
-     * @return The task groups map.
+     * @return The task groups map, of the tasks currently rendered.
      */
     public Map<Task, Group> taskGroups() {
         return taskGroups;
     }
 
     /**
-     * @return The edge lines map.
+     * @return The edge lines map, of the edges currently rendered.
      */
     public Map<DirectedAcyclicGraph.Edge<Task>, Group> edgeLines() {
         return edgeLines;
@@ -0,0 +1,119 @@
+package taskChainPlanner;
+
+import javafx.scene.control.TextField;
+
+public interface GraphView {
+    /**
+     * A GraphView draws a graph of tasks on a pane and keeps the drawing in
+     * line with the graph, for the GraphEditingController. There are two:
+     *
+     * - GraphRenderer keeps a group of JavaFX nodes for each task and edge
+     *   in view, which suits plans small enough for the scene graph
+     * - CanvasGraphRenderer draws the tasks and edges in view onto a single
+     *   canvas, redrawing only the regions that changed, which suits huge plans
+     *
+     * Both follow the graph's structural changes as a listener, and are told
+     * about changes to a task's name, state or position through updateTask.
+     * Positions passed to and returned by a view are in graph coordinates,
+     * which are mapped to the pane by the translation and scale set with
+     * setViewport: pane = translate + scale * graph.
+     */
+    int TASK_RADIUS = 60;
+    double LOW_DETAIL_SCALE = 0.4;
+    double EDGE_WIDTH = 5;
+
+    /**
+     * Renders the whole graph, done once when the view is shown.
+     */
+    void renderGraph();
+
+    /**
+     * Sets how the graph is mapped onto the pane, after it is panned,
+     * zoomed or resized. Only the part of the graph in the pane is drawn,
+     * and below LOW_DETAIL_SCALE it is drawn without labels or arrows.
+     *
+     * @param translateX The x-coordinate of the graph's origin on the pane.
+     * @param translateY The y-coordinate of the graph's origin on the pane.
+     * @param scale The scale the graph is shown at.
+     */
+    void setViewport(double translateX, double translateY, double scale);
+
+    /**
+     * Updates the drawing of a task whose name, state or position changed,
+     * along with the edges to and from it.
+     *
+     * @param task The task to update.
+     */
+    void updateTask(Task task);
+
+    /**
+     * Finds the edge drawn at a point.
+     *
+     * @param x The x-coordinate of the point.
+     * @param y The y-coordinate of the point.
+     * @return The edge at the point, or null if there is none.
+     */
+    DirectedAcyclicGraph.Edge<Task> edgeAt(double x, double y);
+
+    /**
+     * Renders a temporary edge from a task to a point.
+     *
+     * @param startTask The task the edge starts from.
+     * @param x The x-coordinate of the end of the edge.
+     * @param y The y-coordinate of the end of the edge.
+     */
+    void renderTempEdge(Task startTask, double x, double y);
+
+    /**
+     * Clears the temporary edge.
+     */
+    void clearTempEdge();
+
+    /**
+     * Renders an invalid edge in red, which is removed after a timeout.
+     *
+     * @param startTask The task the edge starts from.
+     * @param endTask The task the edge ends at.
+     */
+    void renderInvalidEdge(Task startTask, Task endTask);
+
+    /**
+     * Renders an editable task name over a task, until the task is next updated.
+     *
+     * @param task The task to render the editable name for.
+     * @return The text field representing the editable name.
+     */
+    TextField renderEditableTaskName(Task task);
+
+    /**
+     * Stops following the graph's changes, once the view is no longer shown.
+     */
+    void detach();
+
+    /**
+     * @return The task radius, in graph coordinates.
+     */
+    default int taskRadius() {
+        return TASK_RADIUS;
+    }
+
+    /**
+     * Measures the distance from a point to a line segment.
+     *
+     * @param x The x-coordinate of the point.
+     * @param y The y-coordinate of the point.
+     * @param x1 The x-coordinate of the start of the segment.
+     * @param y1 The y-coordinate of the start of the segment.
+     * @param x2 The x-coordinate of the end of the segment.
+     * @param y2 The y-coordinate of the end of the segment.
+     * @return The distance from the point to the closest point on the segment.
+     */
+    static double segmentDistance(double x, double y, double x1, double y1, double x2, double y2) {
+        double dx = x2 - x1;
+        double dy = y2 - y1;
+        double lengthSquared = dx * dx + dy * dy;
+        double t = lengthSquared == 0 ? 0 : ((x - x1) * dx + (y - y1) * dy) / lengthSquared;
+        t = Math.max(0, Math.min(1, t));
+        return Math.hypot(x - (x1 + t * dx), y - (y1 + t * dy));
+    }
+}
@@ -0,0 +1,205 @@
+package taskChainPlanner;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+
+public class HeadlessSort {
+  /*
+   The headless sort is a command line entry point that sorts a plan without
+   JavaFX, so it runs on servers with no display and no JavaFX SDK, and only
+   needs the core classes on the classpath.
+
+   Usage: HeadlessSort [--parallel] [--critical-path] [file]
+
+   The plan is read from the file, or from standard input if there is none
+   or it is "-". A project file saved by the app is loaded as is, and any
+   other file is read as text, one line at a time:
+   - a line with a task name declares the task
+   - a line with a task name, a tab and another task name declares that the
+     first task depends on the second, declaring either task if needed, and
+     repeating it is ignored, as inserting an edge that exists already is
+   - blank lines and lines starting with # are skipped
+
+   Example:
+   # deploy depends on build and test, test depends on build
+   deploy	build
+   deploy	test
+   test	build
+   docs
+
+   Each line is parsed as it is read, into an index per task name and a
+   flat array of dependency pairs, and the graph is built from those in
+   bulk, so the text is never held in memory. The sorted tasks are then
+   written to standard output as they are visited, one line per task with
+   its id, priority, state and name separated by tabs.
+
+   Errors in the input are reported on standard error with their line
+   number, and the exit status is 1, or 2 for bad arguments.
+  */
+  private static final String USAGE = "Usage: HeadlessSort [--parallel] [--critical-path] [file]";
+  private static final int BUFFER_SIZE = 1 << 16;
+
+  private final HashMap<String, Integer> indices = new HashMap<>();
+  private final ArrayList<Task> tasks = new ArrayList<>();
+  private final HashSet<Long> dependencies = new HashSet<>();
+  private int[] edges = new int[64];
+  private int edgeCount = 0;
+
+  private HeadlessSort() {}
+
+  public static void main(String[] args) {
+    boolean parallel = false;
+    TaskSorter.SortMode mode = TaskSorter.SortMode.DEPENDANTS;
+    String file = null;
+    for (String arg : args) {
+      if (arg.equals("--parallel")) {
+        parallel = true;
+      } else if (arg.equals("--critical-path")) {
+        mode = TaskSorter.SortMode.CRITICAL_PATH;
+      } else if (arg.startsWith("--") || file != null) {
+        System.err.println(USAGE);
+        System.exit(2);
+      } else {
+        file = arg;
+      }
+    }
+
+    try {
+      DirectedAcyclicGraph<Task> graph = read(file);
+      SortedTasks sorted = TaskSorter.sort(graph.freeze(), parallel, mode);
+      // System.out is flushed by line, so write through a buffer of its own
+      Writer out = new BufferedWriter(new OutputStreamWriter(
+          new FileOutputStream(FileDescriptor.out), StandardCharsets.UTF_8), BUFFER_SIZE);
+      write(sorted, out);
+      out.flush();
+    } catch (IOException | IllegalArgumentException e) {
+      System.err.println(e.getMessage());
+      System.exit(1);
+    }
+  }
+
+  /**
+   * Read a plan from a project file, a text file, or standard input.
+   *
+   * @param file the path of the file, or null or "-" for standard input
+   * @return the graph of tasks
+   * @throws IOException if the plan can't be read or is invalid
+   */
+  static DirectedAcyclicGraph<Task> read(String file) throws IOException {
+    if (file != null && !file.equals("-") && file.endsWith(ProjectFile.EXTENSION)) {
+      return ProjectFile.load(Paths.get(file));
+    }
+    if (file == null || file.equals("-")) {
+      return new HeadlessSort().parse(new InputStreamReader(System.in, StandardCharsets.UTF_8), "stdin");
+    }
+    Path path = Paths.get(file);
+    try (Reader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+      return new HeadlessSort().parse(reader, file);
+    }
+  }
+
+  /**
+   * Parse a plan in the text format, one line at a time.
+   *
+   * @param reader the text of the plan
+   * @param source the name of the input, for error messages
+   * @return the graph of tasks
+   * @throws IOException if the plan can't be read or is invalid
+   */
+  private DirectedAcyclicGraph<Task> parse(Reader reader, String source) throws IOException {
+    BufferedReader lines = new BufferedReader(reader, BUFFER_SIZE);
+    int lineNumber = 0;
+    String line;
+    while ((line = lines.readLine()) != null) {
+      lineNumber++;
+      String stripped = line.strip();
+      if (stripped.isEmpty() || stripped.startsWith("#")) {
+        continue;
+      }
+      int tab = line.indexOf('\t');
+      if (tab == -1) {
+        task(stripped);
+        continue;
+      }
+      String from = line.substring(0, tab).strip();
+      String to = line.substring(tab + 1).strip();
+      if (from.isEmpty() || to.isEmpty() || to.indexOf('\t') != -1) {
+        throw new IOException(source + ":" + lineNumber + ": expected a task, or a task and its dependency separated by a tab");
+      }
+      if (from.equals(to)) {
+        throw new IOException(source + ":" + lineNumber + ": '" + from + "' can't depend on itself");
+      }
+      int fromIndex = task(from);
+      int toIndex = task(to);
+      if (!dependencies.add(((long) fromIndex << 32) | toIndex)) {
+        continue;
+      }
+      if (edgeCount == edges.length / 2) {
+        edges = Arrays.copyOf(edges, 2 * edges.length);
+      }
+      edges[2 * edgeCount] = fromIndex;
+      edges[2 * edgeCount + 1] = toIndex;
+      edgeCount++;
+    }
+
+    // the edges are in range, distinct and not self loops, so a cycle is the only way to fail
+    try {
+      return DirectedAcyclicGraph.fromIndexedEdges(tasks.toArray(new Task[0]), Arrays.copyOf(edges, 2 * edgeCount));
+    } catch (IllegalArgumentException e) {
+      throw new IOException(source + ": the dependencies contain a cycle", e);
+    }
+  }
+
+  /**
+   * Get the index of a task by name, declaring it the first time it is named.
+   *
+   * @param name the name of the task
+   * @return the index of the task
+   */
+  private int task(String name) {
+    Integer index = indices.get(name);
+    if (index == null) {
+      index = tasks.size();
+      indices.put(name, index);
+      Task task = new Task(0, 0);
+      task.setName(name);
+      tasks.add(task);
+    }
+    return index;
+  }
+
+  /**
+   * Write the sorted tasks, one line per task with its id, priority, state and name.
+   *
+   * @param sorted the sorted tasks
+   * @param out the output to write to
+   * @throws IOException if the output can't be written
+   */
+  static void write(SortedTasks sorted, Writer out) throws IOException {
+    for (Task task : sorted) {
+      out.write(Integer.toString(task.id()));
+      out.write('\t');
+      out.write(Integer.toString(task.priority()));
+      out.write('\t');
+      out.write(task.taskState());
+      out.write('\t');
+      out.write(task.name());
+      out.write('\n');
+    }
+  }
+}
@@ -0,0 +1,244 @@
+package taskChainPlanner;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+
+public class IncrementalTaskSorter implements DirectedAcyclicGraph.Listener<Task> {
+  /*
+   The incremental task sorter keeps the result of Task.sortTasks up to date
+   as the graph is edited, instead of sorting the whole graph again.
+
+   The sort puts each task in a layer one past the deepest layer of its
+   dependencies, and gives out ids layer by layer. So the sorter listens to
+   the graph's structural changes, and when asked for the sorted tasks, it:
+   - recomputes the layer of each touched task, following its dependants
+     only while their layer actually changes, in the graph's topological
+     order so every dependency is settled before its dependants
+   - rebuilds only the layers from the lowest one that changed, as the ids
+     and priorities of the layers below it can't have changed
+   - merges the rebuilt tasks into the previous result
+
+   Sorting an unchanged graph is just a copy of the previous result, and
+   renaming or moving a task is not a structural change at all.
+
+   The first result is the same as Task.sortTasks. After that, tasks with the
+   same dependants count in a layer keep their previous relative order, and
+   tasks new to a layer come after them. Like sortTasks, the tasks in the
+   rebuilt layers keep their Assigned or Complete state, and have their
+   pending dependencies counted again, which derives whether they are
+   Ready. The sorter owns the ids and priorities of the
+   graph's tasks, so they shouldn't be sorted by anything else meanwhile.
+  */
+  private final DirectedAcyclicGraph<Task> graph;
+  private final HashMap<Task, Integer> levels = new HashMap<>();
+  private final ArrayList<ArrayList<Task>> layers = new ArrayList<>();
+  private final LinkedHashSet<Task> touched = new LinkedHashSet<>();
+  private int firstDirtyLayer = Integer.MAX_VALUE;
+  private Task[] sorted = new Task[0];
+
+  private static final Comparator<Task> TASK_COMPARATOR = (a, b) -> {
+    if (a.priority() == b.priority()) {
+      return Integer.compare(a.id(), b.id());
+    }
+    return Integer.compare(a.priority(), b.priority());
+  };
+
+  /**
+   * Create a sorter for a graph, and start listening to its changes.
+   *
+   * @param graph the directed acyclic graph of tasks
+   */
+  public IncrementalTaskSorter(DirectedAcyclicGraph<Task> graph) {
+    this.graph = graph;
+    this.touched.addAll(graph.nodes());
+    graph.addListener(this);
+  }
+
+  /**
+   * Stop listening to the graph's changes, once the sorter is no longer used.
+   */
+  public void detach() {
+    graph.removeListener(this);
+  }
+
+  /**
+   * @return the graph this sorter sorts
+   */
+  public DirectedAcyclicGraph<Task> graph() {
+    return graph;
+  }
+
+  @Override
+  public void nodeInserted(Task task) {
+    touched.add(task);
+  }
+
+  @Override
+  public void nodeRemoved(Task task) {
+    touched.remove(task);
+    Integer level = levels.remove(task);
+    if (level != null) {
+      markDirty(level);
+    }
+  }
+
+  @Override
+  public void edgeInserted(Task from, Task to) {
+    touched.add(from);
+    touched.add(to);
+  }
+
+  @Override
+  public void edgeRemoved(Task from, Task to) {
+    touched.add(from);
+    touched.add(to);
+  }
+
+  private void markDirty(int level) {
+    firstDirtyLayer = Math.min(firstDirtyLayer, level);
+  }
+
+  /**
+   * Sort the tasks, see Task.sortTasks for the ordering rules,
+   * recomputing only what the changes since the last sort affected.
+   *
+   * Each update builds a new array rather than editing the previous one,
+   * so the snapshot shares it without copying.
+   *
+   * @return the tasks sorted by priority
+   */
+  public SortedTasks sortTasks() {
+    update();
+    return new SortedTasks(sorted);
+  }
+
+  /**
+   * Bring the layers, ids, priorities and sorted result up to date.
+   */
+  private void update() {
+    if (touched.isEmpty() && firstDirtyLayer == Integer.MAX_VALUE) {
+      return;
+    }
+
+    // Recompute the layers of the touched tasks, dependencies first,
+    // following dependants only while their layer changes
+    PriorityQueue<Task> settling = new PriorityQueue<>(
+        (a, b) -> Integer.compare(graph.position(b), graph.position(a)), touched.size());
+    for (Task task : touched) {
+      settling.offer(task);
+    }
+    HashSet<Task> moved = new HashSet<>();
+    ArrayList<Task> propagated = new ArrayList<>();
+    while (!settling.isEmpty()) {
+      Task task = settling.poll();
+      int level = 0;
+      for (Task dependency : graph.get(task)) {
+        level = Math.max(level, levels.get(dependency) + 1);
+      }
+      Integer previous = levels.put(task, level);
+      if (previous == null || previous != level) {
+        if (previous != null) {
+          markDirty(previous);
+        }
+        markDirty(level);
+        moved.add(task);
+        if (!touched.contains(task)) {
+          propagated.add(task);
+        }
+        for (Task dependant : graph.dependants(task)) {
+          if (!settling.contains(dependant)) {
+            settling.offer(dependant);
+          }
+        }
+      } else if (touched.contains(task)) {
+        // the dependants count may have changed, which reorders the layer
+        markDirty(level);
+      }
+    }
+
+    // Tasks that moved go after the ones that stayed in their layer,
+    // touched ones in the order they were touched, then the rest
+    ArrayList<Task> arrivals = new ArrayList<>(moved.size());
+    for (Task task : touched) {
+      if (moved.contains(task)) {
+        arrivals.add(task);
+      }
+    }
+    arrivals.addAll(propagated);
+    touched.clear();
+
+    // Rebuild the layers from the first dirty one, the ones below keep their ids
+    int first = firstDirtyLayer;
+    firstDirtyLayer = Integer.MAX_VALUE;
+    int nextId = 0;
+    for (int level = 0; level < Math.min(first, layers.size()); level++) {
+      nextId += layers.get(level).size();
+    }
+    int firstRebuiltId = nextId;
+    for (int level = first; level < layers.size(); level++) {
+      ArrayList<Task> staying = new ArrayList<>();
+      for (Task task : layers.get(level)) {
+        Integer current = levels.get(task);
+        if (current != null && current == level && !moved.contains(task)) {
+          staying.add(task);
+        }
+      }
+      layers.set(level, staying);
+    }
+    for (Task task : arrivals) {
+      int level = levels.get(task);
+      while (layers.size() <= level) {
+        layers.add(new ArrayList<>());
+      }
+      layers.get(level).add(task);
+    }
+    while (!layers.isEmpty() && layers.get(layers.size() - 1).isEmpty()) {
+      layers.remove(layers.size() - 1);
+    }
+
+    ArrayList<Task> rebuilt = new ArrayList<>();
+    for (int level = first; level < layers.size(); level++) {
+      ArrayList<Task> layer = layers.get(level);
+      // stable, so ties keep the order above
+      layer.sort((a, b) -> Integer.compare(graph.dependants(b).size(), graph.dependants(a).size()));
+      for (Task task : layer) {
+        task.setId(nextId++);
+        int maxPriority = -1;
+        int pendingDependencies = 0;
+        for (Task dependency : graph.get(task)) {
+          maxPriority = Math.max(maxPriority, dependency.id());
+          if (!dependency.isComplete()) {
+            pendingDependencies++;
+          }
+        }
+        task.setPriority(maxPriority);
+        task.setPendingDependencies(pendingDependencies);
+        rebuilt.add(task);
+      }
+    }
+    rebuilt.sort(TASK_COMPARATOR);
+
+    // Merge the rebuilt tasks with the ones whose ids didn't change
+    Task[] merged = new Task[levels.size()];
+    int m = 0;
+    int r = 0;
+    for (Task task : sorted) {
+      // the rebuilt layers hold every task that moved or was removed
+      if (task.id() >= firstRebuiltId) {
+        continue;
+      }
+      while (r < rebuilt.size() && TASK_COMPARATOR.compare(rebuilt.get(r), task) < 0) {
+        merged[m++] = rebuilt.get(r++);
+      }
+      merged[m++] = task;
+    }
+    while (r < rebuilt.size()) {
+      merged[m++] = rebuilt.get(r++);
+    }
+    sorted = m == merged.length ? merged : Arrays.copyOf(merged, m);
+  }
+}
@@ -1,22 +1,39 @@
 package taskChainPlanner;
 
+import java.io.File;
+import java.io.IOException;
 import javafx.application.Application;
 import javafx.scene.Scene;
+import javafx.scene.control.Alert;
 import javafx.scene.control.Button;
+import javafx.scene.control.CheckBox;
 import javafx.scene.layout.BorderPane;
 import javafx.scene.layout.HBox;
 import javafx.scene.layout.Pane;
+import javafx.stage.FileChooser;
 import javafx.stage.Stage;
 
 public class Main extends Application {
+    /**
+     * Plans with at least this many tasks are opened in the canvas view,
+     * which draws huge plans faster than a node per task and edge.
+     */
+    private static final int CANVAS_VIEW_THRESHOLD = 2000;
+
     private Stage primaryStage;
     private BorderPane rootLayout;
     private DirectedAcyclicGraph<Task> graph;
+    private IncrementalTaskSorter taskSorter;
+    private TaskProgress taskProgress;
+    private GraphEditingController graphController;
+    private CheckBox canvasViewToggle;
 
     @Override
     public void start(Stage primaryStage) {
         this.primaryStage = primaryStage;
         this.graph = new DirectedAcyclicGraph<>();
+        this.taskSorter = new IncrementalTaskSorter(graph);
+        this.taskProgress = new TaskProgress(graph);
 
         initializeRootLayout();
         switchToGraphEditingView();
@@ -29,10 +46,22 @@ public class Main extends Application {
         Button editGraphButton = new Button("Graph Editing View");
         Button taskManagementButton = new Button("Task Management View");
 
+        Button openButton = new Button("Open");
+        Button saveButton = new Button("Save");
+        canvasViewToggle = new CheckBox("Canvas View");
+
         editGraphButton.setOnAction(e -> switchToGraphEditingView());
         taskManagementButton.setOnAction(e -> switchToTaskManagementView());
+        openButton.setOnAction(e -> openProject());
+        saveButton.setOnAction(e -> saveProject());
+        canvasViewToggle.setOnAction(e -> {
+            // redraw the graph in the chosen view if it's showing
+            if (graphController != null) {
+                switchToGraphEditingView();
+            }
+        });
 
-        topMenu.getChildren().addAll(editGraphButton, taskManagementButton);
+        topMenu.getChildren().addAll(editGraphButton, taskManagementButton, openButton, saveButton, canvasViewToggle);
         rootLayout.setTop(topMenu);
 
         Scene scene = new Scene(rootLayout, 800, 600);
@@ -42,17 +71,85 @@ public class Main extends Application {
     }
 
     public void switchToGraphEditingView() {
+        detachGraphEditingView();
+        taskProgress.setOnStateChanged(null);
         Pane graphPane = new Pane();
-        GraphEditingController graphController = new GraphEditingController(graph, graphPane);
+        graphController = new GraphEditingController(graph, graphPane, canvasViewToggle.isSelected());
         rootLayout.setCenter(graphPane);
     }
 
     public void switchToTaskManagementView() {
+        detachGraphEditingView();
         Pane taskManagementPane = new Pane();
-        TaskManagementController taskController = new TaskManagementController(graph, taskManagementPane);
+        TaskManagementController taskController = new TaskManagementController(taskSorter, taskProgress, taskManagementPane);
         rootLayout.setCenter(taskManagementPane);
     }
 
+    /**
+     * Stops the graph editing view from following the graph once it's replaced.
+     */
+    private void detachGraphEditingView() {
+        if (graphController != null) {
+            graphController.detach();
+            graphController = null;
+        }
+    }
+
+    /**
+     * Makes a file chooser for project files.
+     *
+     * @param title The title of the file chooser dialog.
+     * @return The file chooser.
+     */
+    private FileChooser projectFileChooser(String title) {
+        FileChooser fileChooser = new FileChooser();
+        fileChooser.setTitle(title);
+        fileChooser.getExtensionFilters().add(
+            new FileChooser.ExtensionFilter("Task Chain Plans", "*" + ProjectFile.EXTENSION));
+        return fileChooser;
+    }
+
+    /**
+     * Replaces the graph with one loaded from a project file
+     * chosen by the user, and shows it in the graph editing view,
+     * on a canvas if the plan is large.
+     */
+    public void openProject() {
+        File file = projectFileChooser("Open Plan").showOpenDialog(primaryStage);
+        if (file == null) {
+            return;
+        }
+        try {
+            graph = ProjectFile.load(file.toPath());
+            taskSorter.detach();
+            taskSorter = new IncrementalTaskSorter(graph);
+            taskProgress.detach();
+            taskProgress = new TaskProgress(graph);
+            canvasViewToggle.setSelected(graph.size() >= CANVAS_VIEW_THRESHOLD);
+            switchToGraphEditingView();
+        } catch (IOException e) {
+            new Alert(Alert.AlertType.ERROR, "Could not open " + file + ": " + e.getMessage()).showAndWait();
+        }
+    }
+
+    /**
+     * Saves the graph to a project file chosen by the user.
+     */
+    public void saveProject() {
+        File file = projectFileChooser("Save Plan").showSaveDialog(primaryStage);
+        if (file == null) {
+            return;
+        }
+        if (!file.getName().endsWith(ProjectFile.EXTENSION)) {
+            file = new File(file.getPath() + ProjectFile.EXTENSION);
+        }
+        try {
+            ProjectFile.save(graph, file.toPath());
+        } catch (IOException e) {
+            new Alert(Alert.AlertType.ERROR, "Could not save " + file + ": " + e.getMessage()).showAndWait();
+        }
+    }
+
     public static void main(String[] args) {
         launch(args);
     }
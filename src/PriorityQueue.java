@@ -1,22 +1,71 @@
 package taskChainPlanner;
 
+import java.util.Arrays;
 import java.util.Comparator;
-import java.util.LinkedList;
+import java.util.HashMap;
 
 /**
- * A priority queue implementation using a linked list.
+ * A priority queue implementation using an indexed binary heap.
  * Requires a comparator to be passed in the constructor.
+ *
+ * The heap is stored in an array of slots, each of which keeps its own
+ * index in that array, and the slots of each element are found through
+ * a hash map, so that removing an element or updating it after its
+ * priority changed is O(log n) instead of a linear scan.
+ *
+ * Like the old linked list implementation, elements are matched with
+ * equals, so remove and contains work for value types like Integer, and
+ * offer always adds an entry, so an element can be queued more than once.
+ * Equal elements share their entries, and only update repositions them.
+ * An element's equals and hashCode must not change while it is queued.
+ *
+ * Elements that compare as equal are polled in the order they were
+ * offered, the same as the old linked list implementation.
  */
 public class PriorityQueue<T> {
-    private LinkedList<T> list; // underlying container
+    private static final int INITIAL_CAPACITY = 16;
+
+    private Slot<T>[] heap; // underlying container
+    private HashMap<T, Slot<T>> positions; // first slot of each element
+    private int size;
+    private long offers;
     private Comparator<T> comparator; // comparator to use for ordering
 
+    /**
+     * A queued entry, which knows its heap index, so moving it
+     * in the heap doesn't touch the map. The entries of an element
+     * queued more than once are linked in the order they were offered.
+     */
+    private static final class Slot<T> {
+        final T element;
+        final long sequence; // offer order, used for ties
+        int position;
+        Slot<T> next;
+
+        Slot(T element, long sequence) {
+            this.element = element;
+            this.sequence = sequence;
+        }
+    }
+
     /**
      * Constructor for the priority queue.
      * @param comparator The comparator to use for ordering the elements.
      */
     public PriorityQueue(Comparator<T> comparator) {
-        list = new LinkedList<>();
+        this(comparator, INITIAL_CAPACITY);
+    }
+
+    /**
+     * Constructor for the priority queue with a capacity hint.
+     * @param comparator The comparator to use for ordering the elements.
+     * @param capacity The number of elements expected to be queued.
+     */
+    @SuppressWarnings("unchecked")
+    public PriorityQueue(Comparator<T> comparator, int capacity) {
+        capacity = Math.max(capacity, 1);
+        heap = (Slot<T>[]) new Slot<?>[capacity];
+        positions = new HashMap<>(Math.max(capacity, INITIAL_CAPACITY));
         this.comparator = comparator;
     }
 
@@ -27,19 +76,25 @@ public class PriorityQueue<T> {
      * of the wrong type can't be added anyway,
      * the java compiler will catch that it's not of type T.
      *
+     * If the element, or an equal one, is already queued, it is queued again.
+     *
      * @param input The element to add.
      */
     public void offer(T input) {
-        int i = 0;
-        // find the correct position to insert the element
-        for (T element : list) {
-            if (comparator.compare(input, element) < 0) {
-                break;
+        if (size == heap.length) {
+            heap = Arrays.copyOf(heap, heap.length * 2);
+        }
+        Slot<T> slot = new Slot<>(input, offers++);
+        slot.position = size;
+        heap[size] = slot;
+        Slot<T> first = positions.putIfAbsent(input, slot);
+        if (first != null) {
+            while (first.next != null) {
+                first = first.next;
             }
-            i++;
+            first.next = slot;
         }
-        // insert the element at the found position
-        list.add(i, input);
+        siftUp(size++);
     }
 
     /**
@@ -47,10 +102,10 @@ public class PriorityQueue<T> {
      * @return The element at the front of the queue.
      */
     public T peek() {
-        if (list.isEmpty()) {
+        if (size == 0) {
             return null;
         }
-        return list.getFirst();
+        return heap[0].element;
     }
 
     /**
@@ -58,19 +113,63 @@ public class PriorityQueue<T> {
      * @return The element at the front of the queue.
      */
     public T poll() {
-        if (list.isEmpty()) {
+        if (size == 0) {
             return null;
         }
-        return list.removeFirst();
+        T first = heap[0].element;
+        removeAt(0);
+        return first;
     }
 
     /**
-     * Removes the specified element from the queue.
+     * Removes the specified element from the queue, or the earliest
+     * offered equal entry if it is queued more than once.
      * @param input The element to remove.
      * @return true if the element was removed successfully.
      */
     public boolean remove(T input) {
-        return list.remove(input);
+        Slot<T> first = positions.get(input);
+        if (first == null) {
+            return false;
+        }
+        removeAt(first.position);
+        return true;
+    }
+
+    /**
+     * Restores the ordering of an element after its priority changed.
+     * The element keeps its original offer order for ties, and every
+     * equal entry is updated if it is queued more than once.
+     * @param input The element whose priority changed.
+     * @return true if the element is in the queue and was updated.
+     */
+    public boolean update(T input) {
+        Slot<T> slot = positions.get(input);
+        if (slot == null) {
+            return false;
+        }
+        if (slot.next == null) {
+            int position = slot.position;
+            if (siftUp(position) == position) {
+                siftDown(position);
+            }
+            return true;
+        }
+        // sifting assumes every other entry is in order, which isn't true
+        // of this element's other entries, so rebuild the heap instead
+        for (int i = (size >>> 1) - 1; i >= 0; i--) {
+            siftDown(i);
+        }
+        return true;
+    }
+
+    /**
+     * Checks if the element, or an equal one, is in the queue.
+     * @param input The element to look for.
+     * @return true if the element is in the queue.
+     */
+    public boolean contains(T input) {
+        return positions.containsKey(input);
     }
 
     /**
@@ -78,7 +177,7 @@ public class PriorityQueue<T> {
      * @return The number of elements in the queue.
      */
     public int size() {
-        return list.size();
+        return size;
     }
 
     /**
@@ -86,18 +185,117 @@ public class PriorityQueue<T> {
      * @return true if the queue is empty.
      */
     public boolean isEmpty() {
-        return list.isEmpty();
+        return size == 0;
+    }
+
+    /**
+     * Removes the element at a heap slot, moving the last
+     * element into the gap and restoring the heap order.
+     * @param position The heap slot to remove.
+     */
+    private void removeAt(int position) {
+        unlink(heap[position]);
+        int last = --size;
+        if (position != last) {
+            heap[position] = heap[last];
+            heap[position].position = position;
+            if (siftUp(position) == position) {
+                siftDown(position);
+            }
+        }
+        heap[last] = null;
+    }
+
+    /**
+     * Removes a slot from the entries of its element.
+     * @param slot The slot to remove.
+     */
+    private void unlink(Slot<T> slot) {
+        Slot<T> first = positions.get(slot.element);
+        if (first == slot) {
+            if (slot.next == null) {
+                positions.remove(slot.element);
+            } else {
+                positions.put(slot.element, slot.next);
+            }
+            return;
+        }
+        while (first.next != slot) {
+            first = first.next;
+        }
+        first.next = slot.next;
     }
 
     /**
-     * String representation of the priority queue.
+     * Moves the element at a heap slot up until its parent is not greater.
+     * @param position The heap slot to sift up.
+     * @return The final heap slot of the element.
+     */
+    private int siftUp(int position) {
+        while (position > 0) {
+            int parent = (position - 1) >>> 1;
+            if (!less(position, parent)) {
+                break;
+            }
+            swap(position, parent);
+            position = parent;
+        }
+        return position;
+    }
+
+    /**
+     * Moves the element at a heap slot down until neither child is smaller.
+     * @param position The heap slot to sift down.
+     */
+    private void siftDown(int position) {
+        while (true) {
+            int smallest = position;
+            int left = 2 * position + 1;
+            int right = left + 1;
+            if (left < size && less(left, smallest)) {
+                smallest = left;
+            }
+            if (right < size && less(right, smallest)) {
+                smallest = right;
+            }
+            if (smallest == position) {
+                return;
+            }
+            swap(position, smallest);
+            position = smallest;
+        }
+    }
+
+    private boolean less(int i, int j) {
+        int comparison = comparator.compare(heap[i].element, heap[j].element);
+        if (comparison != 0) {
+            return comparison < 0;
+        }
+        return heap[i].sequence < heap[j].sequence;
+    }
+
+    private void swap(int i, int j) {
+        Slot<T> slot = heap[i];
+        heap[i] = heap[j];
+        heap[j] = slot;
+        heap[i].position = i;
+        heap[j].position = j;
+    }
+
+    /**
+     * String representation of the priority queue, in priority order.
      * @return The string representation of the priority queue.
      */
     @Override
     public String toString() {
+        Integer[] slots = new Integer[size];
+        for (int i = 0; i < size; i++) {
+            slots[i] = i;
+        }
+        Arrays.sort(slots, (a, b) -> less(a, b) ? -1 : (less(b, a) ? 1 : 0));
         StringBuilder sb = new StringBuilder();
-        for (T element : list) {
-            sb.append(element).append("\n");
+        for (int slot : slots) {
+            sb.append(heap[slot].element).append("\n");
         }
         return sb.toString();
     }
@@ -0,0 +1,263 @@
+package taskChainPlanner;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+public class ProjectFile {
+  /*
+   A project file is a versioned binary snapshot of a graph of tasks.
+
+   Every field is stored as its own flat section rather than task by task,
+   so saving and loading are bulk copies between arrays and the file, and
+   loading reads the whole file in one go instead of parsing it object by
+   object. The file is read into the heap rather than mapped, since Java
+   can't unmap a file, and on Windows a file that is still mapped can't be
+   replaced, so saving over a project that was just opened would fail.
+   All values are little endian, and tasks and edges refer to tasks by their
+   index in the file.
+
+   Layout (version 2):
+   header     magic, version, task count, edge count, name bytes, 3 reserved ints
+   x          double per task
+   y          double per task
+   duration   double per task
+   flags      int per task
+   id         int per task
+   priority   int per task
+   names      int offset per task plus one, then the UTF-8 bytes of every name,
+              padded to a multiple of 4 bytes
+   edges      int pair per edge, the index of the from and the to task
+
+   Version 1 files have no duration section, and their tasks are loaded
+   with the default duration.
+  */
+  public static final String EXTENSION = ".tcplan";
+  private static final int MAGIC = 0x4E414C50; // "PLAN" in little endian
+  private static final int VERSION = 2;
+  private static final int HEADER_BYTES = 32;
+
+  private ProjectFile() {}
+
+  /**
+   * Save a graph of tasks to a project file.
+   * The file is written next to the target and then moved over it,
+   * so a failed save never leaves a half written project behind.
+   * The move is atomic where the file system supports it.
+   *
+   * @param graph the graph to save
+   * @param path the file to save to
+   * @throws IOException if the file can't be written, or the project is too large for the format
+   */
+  public static void save(DirectedAcyclicGraph<Task> graph, Path path) throws IOException {
+    CompactGraph<Task> compact = graph.freeze();
+    int n = compact.size();
+    int edgeCount = compact.edgeCount();
+
+    double[] xs = new double[n];
+    double[] ys = new double[n];
+    double[] durations = new double[n];
+    int[] flags = new int[n];
+    int[] ids = new int[n];
+    int[] priorities = new int[n];
+    int[] nameOffsets = new int[n + 1];
+    byte[][] names = new byte[n][];
+    for (int i = 0; i < n; i++) {
+      Task task = compact.node(i);
+      xs[i] = task.x();
+      ys[i] = task.y();
+      durations[i] = task.duration();
+      flags[i] = task.bitflags();
+      ids[i] = task.id();
+      priorities[i] = task.priority();
+      names[i] = task.name().getBytes(StandardCharsets.UTF_8);
+      nameOffsets[i + 1] = sectionBytes((long) nameOffsets[i] + names[i].length);
+    }
+    int nameBytes = nameOffsets[n];
+
+    // Every section is a single buffer, and the whole file is read
+    // into a single buffer when loaded, so none can be over 2GB
+    int positionBytes = sectionBytes(24L * n);
+    int fieldBytes = sectionBytes(12L * n + 4L * (n + 1));
+    int textBytes = sectionBytes(padded(nameBytes));
+    int linkBytes = sectionBytes(8L * edgeCount);
+    sectionBytes((long) HEADER_BYTES + positionBytes + fieldBytes + textBytes + linkBytes);
+
+    int[] offsets = compact.outOffsets();
+    int[] targets = compact.outTargets();
+    int[] edges = new int[2 * edgeCount];
+    for (int i = 0, e = 0; i < n; i++) {
+      for (int k = offsets[i]; k < offsets[i + 1]; k++) {
+        edges[e++] = i;
+        edges[e++] = targets[k];
+      }
+    }
+
+    ByteBuffer header = buffer(HEADER_BYTES);
+    header.putInt(MAGIC).putInt(VERSION).putInt(n).putInt(edgeCount).putInt(nameBytes).clear();
+
+    ByteBuffer positions = buffer(positionBytes);
+    positions.asDoubleBuffer().put(xs).put(ys).put(durations);
+
+    ByteBuffer fields = buffer(fieldBytes);
+    fields.asIntBuffer().put(flags).put(ids).put(priorities).put(nameOffsets);
+
+    ByteBuffer text = buffer(textBytes);
+    for (byte[] name : names) {
+      text.put(name);
+    }
+    text.clear();
+
+    ByteBuffer links = buffer(linkBytes);
+    links.asIntBuffer().put(edges);
+
+    Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+    try {
+      try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+          StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+        ByteBuffer[] sections = { header, positions, fields, text, links };
+        long remaining = 0;
+        for (ByteBuffer section : sections) {
+          remaining += section.remaining();
+        }
+        while (remaining > 0) {
+          remaining -= channel.write(sections);
+        }
+      }
+      try {
+        Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+      } catch (AtomicMoveNotSupportedException e) {
+        Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING);
+      }
+    } catch (IOException | RuntimeException e) {
+      try {
+        Files.deleteIfExists(temporary);
+      } catch (IOException suppressed) {
+        e.addSuppressed(suppressed);
+      }
+      throw e;
+    }
+  }
+
+  /**
+   * Load a graph of tasks from a project file.
+   *
+   * @param path the file to load from
+   * @return the graph of tasks
+   * @throws IOException if the file can't be read or isn't a valid project file
+   */
+  public static DirectedAcyclicGraph<Task> load(Path path) throws IOException {
+    ByteBuffer file;
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      if (channel.size() > Integer.MAX_VALUE) {
+        throw new IOException(path + " is too large to be a task chain project file");
+      }
+      file = buffer((int) channel.size());
+      // a file that shrinks while being read ends up short, and is rejected as truncated below
+      while (file.hasRemaining()) {
+        if (channel.read(file) < 0) {
+          break;
+        }
+      }
+      file.flip();
+    }
+
+    if (file.limit() < HEADER_BYTES || file.getInt(0) != MAGIC) {
+      throw new IOException(path + " is not a task chain project file");
+    }
+    int version = file.getInt(4);
+    if (version < 1 || version > VERSION) {
+      throw new IOException(path + " has unsupported project file version " + version);
+    }
+    int n = file.getInt(8);
+    int edgeCount = file.getInt(12);
+    int nameBytes = file.getInt(16);
+    // version 1 has x and y, later versions also have durations
+    int doubleBytes = version == 1 ? 16 : 24;
+    long expected = HEADER_BYTES + (long) doubleBytes * n + 12L * n + 4L * (n + 1) + padded(nameBytes) + 8L * edgeCount;
+    if (n < 0 || edgeCount < 0 || nameBytes < 0 || file.limit() != expected) {
+      throw new IOException(path + " is truncated or corrupt");
+    }
+
+    double[] xs = new double[n];
+    double[] ys = new double[n];
+    double[] durations = null;
+    file.position(HEADER_BYTES);
+    DoubleBuffer doubles = file.slice().order(ByteOrder.LITTLE_ENDIAN).asDoubleBuffer().get(xs).get(ys);
+    if (version > 1) {
+      durations = new double[n];
+      doubles.get(durations);
+    }
+    int fieldsStart = HEADER_BYTES + doubleBytes * n;
+
+    int[] flags = new int[n];
+    int[] ids = new int[n];
+    int[] priorities = new int[n];
+    int[] nameOffsets = new int[n + 1];
+    file.position(fieldsStart);
+    file.slice().order(ByteOrder.LITTLE_ENDIAN).asIntBuffer().get(flags).get(ids).get(priorities).get(nameOffsets);
+
+    byte[] names = new byte[nameBytes];
+    file.position(fieldsStart + 16 * n + 4);
+    file.get(names);
+
+    int[] edges = new int[2 * edgeCount];
+    file.position(fieldsStart + 16 * n + 4 + (int) padded(nameBytes));
+    file.slice().order(ByteOrder.LITTLE_ENDIAN).asIntBuffer().get(edges);
+
+    Task[] tasks = new Task[n];
+    for (int i = 0; i < n; i++) {
+      if (nameOffsets[i] > nameOffsets[i + 1] || nameOffsets[i + 1] > nameBytes) {
+        throw new IOException(path + " is truncated or corrupt");
+      }
+      tasks[i] = new Task(xs[i], ys[i]);
+      tasks[i].setName(new String(names, nameOffsets[i], nameOffsets[i + 1] - nameOffsets[i], StandardCharsets.UTF_8));
+      tasks[i].setBitflags(flags[i]);
+      tasks[i].setId(ids[i]);
+      tasks[i].setPriority(priorities[i]);
+      if (durations != null) {
+        try {
+          tasks[i].setDuration(durations[i]);
+        } catch (IllegalArgumentException e) {
+          throw new IOException(path + " has an invalid duration: " + e.getMessage(), e);
+        }
+      }
+    }
+
+    try {
+      return DirectedAcyclicGraph.fromIndexedEdges(tasks, edges);
+    } catch (IllegalArgumentException e) {
+      throw new IOException(path + " has invalid edges: " + e.getMessage(), e);
+    }
+  }
+
+  private static ByteBuffer buffer(int bytes) {
+    return ByteBuffer.allocate(bytes).order(ByteOrder.LITTLE_ENDIAN);
+  }
+
+  /**
+   * Check that a section of the file, or the whole file, fits in a single buffer.
+   *
+   * @param bytes the size of the section
+   * @return the size of the section as an int
+   * @throws IOException if the section is too large
+   */
+  private static int sectionBytes(long bytes) throws IOException {
+    if (bytes > Integer.MAX_VALUE) {
+      throw new IOException("The project is too large to save, a section would need " + bytes + " bytes");
+    }
+    return (int) bytes;
+  }
+
+  private static long padded(long bytes) {
+    return (bytes + 3) & ~3L;
+  }
+}
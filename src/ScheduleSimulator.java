@@ -0,0 +1,442 @@
+package taskChainPlanner;
+
+public class ScheduleSimulator {
+  /*
+   The schedule simulator replays how a plan would be worked through by a
+   number of workers, using each task's estimated duration, to show how many
+   workers the plan can actually keep busy.
+
+   It does list scheduling: whenever a worker is free and a task is ready,
+   the ready task that comes first in the sorted tasks is started on the free
+   worker with the lowest number. Time then jumps to the next time a task
+   finishes, which frees its worker and may make its dependants ready.
+
+   Example (A depends on B and C, B depends on C, durations A: 1, B: 3, C: 2,
+   D: 4 on its own, two workers, sorted C, D, B, A):
+   time 0:   worker 0 starts C, worker 1 starts D
+   time 2:   C finishes, worker 0 starts B
+   time 4:   D finishes, worker 1 has nothing ready
+   time 5:   B finishes, worker 0 starts A
+   time 6:   A finishes, the makespan is 6
+
+   The graph is frozen and indexed by rank once, so a simulation only works
+   over int and double arrays, with heaps of ranks, of free workers, and of
+   the running tasks by finish time, and each one costs O((V + E) log V).
+   That makes it cheap to simulate the same plan for every worker count from
+   1 to a few hundred, or the same plan in different sort orders, to compare
+   their makespans.
+  */
+  private final Task[] tasks;
+  private final double[] durations;
+  private final int[] dependencyCounts;
+  private final int[] dependantsOffsets;
+  private final int[] dependants;
+
+  /**
+   * Create a simulator for a graph of tasks, started in the order Task.sortTasks would
+   * list them in. The order is worked out from a snapshot of the graph, so the tasks'
+   * ids and priorities are left as they are.
+   *
+   * @param graph the directed acyclic graph of tasks
+   */
+  public ScheduleSimulator(DirectedAcyclicGraph<Task> graph) {
+    this(graph.freeze(), null);
+  }
+
+  /**
+   * Create a simulator for a graph of tasks, starting ready tasks in the given order,
+   * for example one sorted in CRITICAL_PATH mode.
+   *
+   * @param graph the directed acyclic graph of tasks
+   * @param order the tasks of the graph, each once, in the order to prefer them,
+   *        or null for the order Task.sortTasks would list them in
+   * @throws IllegalArgumentException if the order doesn't hold each task of the graph once
+   */
+  public ScheduleSimulator(DirectedAcyclicGraph<Task> graph, SortedTasks order) {
+    this(graph.freeze(), order);
+  }
+
+  private ScheduleSimulator(CompactGraph<Task> compact, SortedTasks order) {
+    int n = compact.size();
+    if (order != null && order.size() != n) {
+      throw new IllegalArgumentException("The order has " + order.size() + " tasks, the graph has " + n);
+    }
+    tasks = new Task[n];
+    durations = new double[n];
+    dependencyCounts = new int[n];
+    int[] rankOfIndex = new int[n];
+    int[] indexOfRank = order == null
+        ? TaskSorter.sortedIndices(compact, TaskSorter.SortMode.DEPENDANTS) : new int[n];
+    boolean[] seen = new boolean[n];
+    for (int rank = 0; rank < n; rank++) {
+      Task task = order == null ? compact.node(indexOfRank[rank]) : order.get(rank);
+      int index = compact.indexOf(task);
+      if (index == -1 || seen[index]) {
+        throw new IllegalArgumentException("The order doesn't match the graph at " + task);
+      }
+      seen[index] = true;
+      tasks[rank] = task;
+      durations[rank] = task.duration();
+      dependencyCounts[rank] = compact.outDegree(index);
+      rankOfIndex[index] = rank;
+      indexOfRank[rank] = index;
+    }
+
+    // Lay the dependants out by rank, so a simulation never looks at the graph
+    int[] inOffsets = compact.inOffsets();
+    int[] inTargets = compact.inTargets();
+    dependantsOffsets = new int[n + 1];
+    dependants = new int[inTargets.length];
+    for (int rank = 0; rank < n; rank++) {
+      int index = indexOfRank[rank];
+      int count = inOffsets[index + 1] - inOffsets[index];
+      dependantsOffsets[rank + 1] = dependantsOffsets[rank] + count;
+      for (int e = 0; e < count; e++) {
+        dependants[dependantsOffsets[rank] + e] = rankOfIndex[inTargets[inOffsets[index] + e]];
+      }
+    }
+  }
+
+  /**
+   * @return the number of tasks simulated
+   */
+  public int size() {
+    return tasks.length;
+  }
+
+  /**
+   * Simulate working through the plan with a number of workers.
+   *
+   * @param workers the number of workers
+   * @return the schedule the workers would follow
+   * @throws IllegalArgumentException if there are no workers
+   */
+  public Schedule simulate(int workers) {
+    if (workers < 1) {
+      throw new IllegalArgumentException("There must be at least one worker: " + workers);
+    }
+    int n = tasks.length;
+    int[] pending = dependencyCounts.clone();
+    double[] starts = new double[n];
+    int[] assignedWorkers = new int[n];
+    double[] busy = new double[workers];
+    double[] lastFinish = new double[workers];
+    int[] gapCounts = new int[workers];
+    double[] longestGaps = new double[workers];
+
+    IntHeap ready = new IntHeap(n);
+    for (int rank = 0; rank < n; rank++) {
+      if (pending[rank] == 0) {
+        ready.push(rank);
+      }
+    }
+    IntHeap free = new IntHeap(workers);
+    for (int worker = 0; worker < workers; worker++) {
+      free.push(worker);
+    }
+    EventHeap running = new EventHeap(Math.min(workers, Math.max(n, 1)));
+
+    double now = 0;
+    int remaining = n;
+    int peakParallelism = 0;
+    double peakTime = 0;
+    while (remaining > 0) {
+      // Start the first ready tasks on the free workers
+      while (!free.isEmpty() && !ready.isEmpty()) {
+        int rank = ready.pop();
+        int worker = free.pop();
+        starts[rank] = now;
+        assignedWorkers[rank] = worker;
+        busy[worker] += durations[rank];
+        double gap = now - lastFinish[worker];
+        if (gap > 0) {
+          gapCounts[worker]++;
+          longestGaps[worker] = Math.max(longestGaps[worker], gap);
+        }
+        running.push(now + durations[rank], rank);
+      }
+      if (running.size() > peakParallelism) {
+        peakParallelism = running.size();
+        peakTime = now;
+      }
+
+      // Move on to the next finish, and finish every task that ends then
+      now = running.peekTime();
+      do {
+        int rank = running.pop();
+        int worker = assignedWorkers[rank];
+        lastFinish[worker] = now;
+        free.push(worker);
+        remaining--;
+        for (int e = dependantsOffsets[rank]; e < dependantsOffsets[rank + 1]; e++) {
+          if (--pending[dependants[e]] == 0) {
+            ready.push(dependants[e]);
+          }
+        }
+      } while (!running.isEmpty() && running.peekTime() == now);
+    }
+
+    double makespan = now;
+    for (int worker = 0; worker < workers; worker++) {
+      double gap = makespan - lastFinish[worker];
+      if (gap > 0) {
+        gapCounts[worker]++;
+        longestGaps[worker] = Math.max(longestGaps[worker], gap);
+      }
+    }
+    return new Schedule(this, workers, makespan, starts, assignedWorkers, busy, gapCounts, longestGaps,
+        peakParallelism, peakTime);
+  }
+
+  /**
+   * The result of a simulation: when and by which worker each task is done,
+   * and how well the workers are used.
+   */
+  public static class Schedule {
+    private final ScheduleSimulator simulator;
+    private final int workers;
+    private final double makespan;
+    private final double[] starts;
+    private final int[] assignedWorkers;
+    private final double[] busy;
+    private final int[] gapCounts;
+    private final double[] longestGaps;
+    private final int peakParallelism;
+    private final double peakTime;
+
+    private Schedule(ScheduleSimulator simulator, int workers, double makespan, double[] starts,
+        int[] assignedWorkers, double[] busy, int[] gapCounts, double[] longestGaps,
+        int peakParallelism, double peakTime) {
+      this.simulator = simulator;
+      this.workers = workers;
+      this.makespan = makespan;
+      this.starts = starts;
+      this.assignedWorkers = assignedWorkers;
+      this.busy = busy;
+      this.gapCounts = gapCounts;
+      this.longestGaps = longestGaps;
+      this.peakParallelism = peakParallelism;
+      this.peakTime = peakTime;
+    }
+
+    /**
+     * @return the number of workers simulated
+     */
+    public int workers() {
+      return workers;
+    }
+
+    /**
+     * @return the time the last task finishes
+     */
+    public double makespan() {
+      return makespan;
+    }
+
+    /**
+     * Get when a task is started, by the rank it was given in the simulated order.
+     *
+     * @param rank the rank of the task
+     * @return the time the task is started
+     */
+    public double start(int rank) {
+      return starts[rank];
+    }
+
+    /**
+     * Get which worker does a task, by the rank it was given in the simulated order.
+     *
+     * @param rank the rank of the task
+     * @return the number of the worker, from 0
+     */
+    public int worker(int rank) {
+      return assignedWorkers[rank];
+    }
+
+    /**
+     * @param rank the rank of the task
+     * @return the task at the rank in the simulated order
+     */
+    public Task task(int rank) {
+      return simulator.tasks[rank];
+    }
+
+    /**
+     * @param worker the number of the worker, from 0
+     * @return the fraction of the makespan the worker spends on tasks
+     */
+    public double utilization(int worker) {
+      return makespan == 0 ? 0 : busy[worker] / makespan;
+    }
+
+    /**
+     * @return the fraction of the makespan the workers spend on tasks, over all of them
+     */
+    public double utilization() {
+      double total = 0;
+      for (double time : busy) {
+        total += time;
+      }
+      return makespan == 0 ? 0 : total / (workers * makespan);
+    }
+
+    /**
+     * @param worker the number of the worker, from 0
+     * @return the time the worker spends without a task before the makespan
+     */
+    public double idleTime(int worker) {
+      return makespan - busy[worker];
+    }
+
+    /**
+     * Get the number of idle gaps of a worker, the stretches of time before
+     * the makespan in which it has no task, including any before its first
+     * task and after its last one.
+     *
+     * @param worker the number of the worker, from 0
+     * @return the number of idle gaps
+     */
+    public int idleGaps(int worker) {
+      return gapCounts[worker];
+    }
+
+    /**
+     * @param worker the number of the worker, from 0
+     * @return the length of the worker's longest idle gap, or 0 if it has none
+     */
+    public double longestIdleGap(int worker) {
+      return longestGaps[worker];
+    }
+
+    /**
+     * @return the most tasks running at the same time
+     */
+    public int peakParallelism() {
+      return peakParallelism;
+    }
+
+    /**
+     * @return the first time the peak parallelism is reached
+     */
+    public double peakTime() {
+      return peakTime;
+    }
+
+    @Override
+    public String toString() {
+      return String.format("Schedule{workers=%d, makespan=%s, utilization=%.3f, peakParallelism=%d at %s}",
+          workers, makespan, utilization(), peakParallelism, peakTime);
+    }
+  }
+
+  /**
+   * A binary min-heap of ints, for ranks and worker numbers.
+   */
+  private static class IntHeap {
+    private final int[] heap;
+    private int size = 0;
+
+    IntHeap(int capacity) {
+      heap = new int[capacity];
+    }
+
+    boolean isEmpty() {
+      return size == 0;
+    }
+
+    void push(int value) {
+      int i = size++;
+      while (i > 0 && heap[(i - 1) / 2] > value) {
+        heap[i] = heap[(i - 1) / 2];
+        i = (i - 1) / 2;
+      }
+      heap[i] = value;
+    }
+
+    int pop() {
+      int top = heap[0];
+      int last = heap[--size];
+      int i = 0;
+      while (2 * i + 1 < size) {
+        int child = 2 * i + 1;
+        if (child + 1 < size && heap[child + 1] < heap[child]) {
+          child++;
+        }
+        if (heap[child] >= last) {
+          break;
+        }
+        heap[i] = heap[child];
+        i = child;
+      }
+      heap[i] = last;
+      return top;
+    }
+  }
+
+  /**
+   * A binary min-heap of running tasks by finish time, then rank.
+   */
+  private static class EventHeap {
+    private final double[] times;
+    private final int[] ranks;
+    private int size = 0;
+
+    EventHeap(int capacity) {
+      times = new double[capacity];
+      ranks = new int[capacity];
+    }
+
+    int size() {
+      return size;
+    }
+
+    boolean isEmpty() {
+      return size == 0;
+    }
+
+    double peekTime() {
+      return times[0];
+    }
+
+    void push(double time, int rank) {
+      int i = size++;
+      while (i > 0 && before(time, rank, (i - 1) / 2)) {
+        times[i] = times[(i - 1) / 2];
+        ranks[i] = ranks[(i - 1) / 2];
+        i = (i - 1) / 2;
+      }
+      times[i] = time;
+      ranks[i] = rank;
+    }
+
+    int pop() {
+      int top = ranks[0];
+      double lastTime = times[--size];
+      int lastRank = ranks[size];
+      int i = 0;
+      while (2 * i + 1 < size) {
+        int child = 2 * i + 1;
+        if (child + 1 < size && before(times[child + 1], ranks[child + 1], child)) {
+          child++;
+        }
+        if (!before(times[child], ranks[child], lastTime, lastRank)) {
+          break;
+        }
+        times[i] = times[child];
+        ranks[i] = ranks[child];
+        i = child;
+      }
+      times[i] = lastTime;
+      ranks[i] = lastRank;
+      return top;
+    }
+
+    private boolean before(double time, int rank, int slot) {
+      return before(time, rank, times[slot], ranks[slot]);
+    }
+
+    private static boolean before(double time, int rank, double otherTime, int otherRank) {
+      return time < otherTime || (time == otherTime && rank < otherRank);
+    }
+  }
+}
@@ -0,0 +1,207 @@
+package taskChainPlanner;
+
+import java.util.AbstractList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.RandomAccess;
+
+public class SortedTasks implements Iterable<Task> {
+  /*
+   Sorted tasks are an immutable snapshot of the result of a task sort,
+   the tasks ordered by priority and then by id.
+
+   Unlike a priority queue, reading the snapshot doesn't consume it, so the
+   same result can be rendered, exported and scheduled as many times as
+   needed without sorting again. Tasks are addressed by their rank, their
+   index in the sorted order, and a range of ranks is a view over the same
+   array rather than a copy.
+
+   Example (tasks as name:priority:id):
+   ranks: 0     1     2      3
+   tasks: C:-1:0 D:-1:1 B:0:2 A:2:3
+   range(1, 3): D:-1:1 B:0:2
+
+   The snapshot holds the tasks, not copies of them, so the tasks' own
+   fields still change if they are edited or sorted again. The order of
+   the snapshot is the order they had when it was taken.
+
+   A sort in CRITICAL_PATH mode also keeps the critical path it ordered
+   the tasks by, which ranges of the snapshot share.
+  */
+  private final Task[] tasks;
+  private final int from;
+  private final int to;
+  private final CriticalPath criticalPath;
+  // built on the first lookup, and only ever replaced by an equal index, so
+  // the volatile write publishes it whole to the other threads reading it
+  private volatile HashMap<Task, Integer> ranks;
+
+  /**
+   * Wrap an array of tasks already in sorted order.
+   * The array is shared rather than copied, so it must not be modified afterwards.
+   *
+   * @param tasks the sorted tasks
+   */
+  SortedTasks(Task[] tasks) {
+    this(tasks, null);
+  }
+
+  /**
+   * Wrap an array of tasks already in sorted order, along with the critical path of their graph.
+   * The array is shared rather than copied, so it must not be modified afterwards.
+   *
+   * @param tasks the sorted tasks
+   * @param criticalPath the critical path of the tasks' graph, or null if it wasn't computed
+   */
+  SortedTasks(Task[] tasks, CriticalPath criticalPath) {
+    this(tasks, 0, tasks.length, criticalPath);
+  }
+
+  private SortedTasks(Task[] tasks, int from, int to, CriticalPath criticalPath) {
+    this.tasks = tasks;
+    this.from = from;
+    this.to = to;
+    this.criticalPath = criticalPath;
+  }
+
+  /**
+   * @return the critical path of the sorted graph, or null if the tasks
+   *         weren't sorted in CRITICAL_PATH mode
+   */
+  public CriticalPath criticalPath() {
+    return criticalPath;
+  }
+
+  /**
+   * @return the number of tasks
+   */
+  public int size() {
+    return to - from;
+  }
+
+  /**
+   * @return whether there are no tasks
+   */
+  public boolean isEmpty() {
+    return to == from;
+  }
+
+  /**
+   * Get the task at a rank in the sorted order.
+   *
+   * @param rank the rank of the task
+   * @return the task
+   * @throws IndexOutOfBoundsException if the rank is not in [0, size())
+   */
+  public Task get(int rank) {
+    if (rank < 0 || rank >= size()) {
+      throw new IndexOutOfBoundsException("Rank " + rank + " out of bounds for size " + size());
+    }
+    return tasks[from + rank];
+  }
+
+  /**
+   * Get the tasks between two ranks, without copying them.
+   *
+   * @param fromRank the first rank, inclusive
+   * @param toRank the last rank, exclusive
+   * @return the sorted tasks in the range
+   * @throws IndexOutOfBoundsException if the range is not within [0, size()]
+   */
+  public SortedTasks range(int fromRank, int toRank) {
+    if (fromRank < 0 || toRank > size() || fromRank > toRank) {
+      throw new IndexOutOfBoundsException("Range [" + fromRank + ", " + toRank + ") out of bounds for size " + size());
+    }
+    return new SortedTasks(tasks, from + fromRank, from + toRank, criticalPath);
+  }
+
+  /**
+   * Get the rank of a task in the sorted order.
+   * The index of ranks is built on the first lookup. Threads that look up
+   * ranks at the same time may each build it, but only ever read a whole one.
+   *
+   * @param task the task to look up
+   * @return the rank of the task, or -1 if it isn't in the snapshot
+   */
+  public int rankOf(Task task) {
+    HashMap<Task, Integer> index = ranks;
+    if (index == null) {
+      index = new HashMap<>(2 * size());
+      for (int i = from; i < to; i++) {
+        index.put(tasks[i], i - from);
+      }
+      ranks = index;
+    }
+    Integer rank = index.get(task);
+    return rank == null ? -1 : rank;
+  }
+
+  /**
+   * @param task the task to look up
+   * @return whether the task is in the snapshot
+   */
+  public boolean contains(Task task) {
+    return rankOf(task) != -1;
+  }
+
+  /**
+   * @return an unmodifiable list view of the tasks in sorted order
+   */
+  public List<Task> asList() {
+    return new TaskList();
+  }
+
+  @Override
+  public Iterator<Task> iterator() {
+    return new Iterator<Task>() {
+      private int next = from;
+
+      @Override
+      public boolean hasNext() {
+        return next < to;
+      }
+
+      @Override
+      public Task next() {
+        if (next >= to) {
+          throw new NoSuchElementException();
+        }
+        return tasks[next++];
+      }
+    };
+  }
+
+  @Override
+  public String toString() {
+    return asList().toString();
+  }
+
+  private class TaskList extends AbstractList<Task> implements RandomAccess {
+    @Override
+    public Task get(int index) {
+      return SortedTasks.this.get(index);
+    }
+
+    @Override
+    public int size() {
+      return SortedTasks.this.size();
+    }
+
+    @Override
+    public int indexOf(Object o) {
+      return o instanceof Task ? rankOf((Task) o) : -1;
+    }
+
+    @Override
+    public int lastIndexOf(Object o) {
+      return indexOf(o);
+    }
+
+    @Override
+    public boolean contains(Object o) {
+      return indexOf(o) != -1;
+    }
+  }
+}
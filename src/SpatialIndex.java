@@ -0,0 +1,214 @@
+package taskChainPlanner;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class SpatialIndex implements DirectedAcyclicGraph.Listener<Task> {
+  /*
+   The spatial index is a uniform grid over the positions of a graph's tasks,
+   so finding the tasks at or around a point only looks at the few cells
+   near it, instead of at every task in the graph.
+
+   The plane is divided into square cells, and each cell that has tasks in
+   it is a bucket in a hash map, keyed by the cell's column and row packed
+   into a long. Empty cells take no space, so the grid is unbounded.
+
+   Example (cell size 100):
+   A at (30, 40)   -> cell (0, 0)
+   B at (130, 40)  -> cell (1, 0)
+   C at (-20, 250) -> cell (-1, 2)
+
+   The index listens to the graph, so inserted tasks are indexed and removed
+   ones are dropped, and indexed tasks report their own moves through setPos.
+   With a cell size around the size of a task, a point query checks at most
+   four cells, and a rectangle query checks the cells it covers or, if that
+   is more, just the cells in use.
+  */
+  private final DirectedAcyclicGraph<Task> graph;
+  private final double cellSize;
+  private final HashMap<Long, ArrayList<Task>> cells = new HashMap<>();
+  private int size = 0;
+
+  /**
+   * Create an index over the tasks of a graph, and start following its changes.
+   *
+   * @param graph the directed acyclic graph of tasks
+   * @param cellSize the width and height of a grid cell
+   */
+  public SpatialIndex(DirectedAcyclicGraph<Task> graph, double cellSize) {
+    if (!(cellSize > 0)) {
+      throw new IllegalArgumentException("The cell size must be positive: " + cellSize);
+    }
+    this.graph = graph;
+    this.cellSize = cellSize;
+    for (Task task : graph.nodes()) {
+      nodeInserted(task);
+    }
+    graph.addListener(this);
+  }
+
+  /**
+   * Stop following the graph's changes, and stop the tasks from reporting their moves.
+   */
+  public void detach() {
+    graph.removeListener(this);
+    for (ArrayList<Task> cell : cells.values()) {
+      for (Task task : cell) {
+        task.setIndex(null);
+      }
+    }
+    cells.clear();
+    size = 0;
+  }
+
+  /**
+   * @return the number of indexed tasks
+   */
+  public int size() {
+    return size;
+  }
+
+  @Override
+  public void nodeInserted(Task task) {
+    cells.computeIfAbsent(key(task.x(), task.y()), k -> new ArrayList<>()).add(task);
+    task.setIndex(this);
+    size++;
+  }
+
+  @Override
+  public void nodeRemoved(Task task) {
+    if (removeFromCell(key(task.x(), task.y()), task)) {
+      task.setIndex(null);
+      size--;
+    }
+  }
+
+  /**
+   * Move a task to the cell of its new position, called by the task when it moves.
+   *
+   * @param task the task that moved
+   * @param oldX the x coordinate it moved from
+   * @param oldY the y coordinate it moved from
+   */
+  void move(Task task, double oldX, double oldY) {
+    long from = key(oldX, oldY);
+    long to = key(task.x(), task.y());
+    if (from != to && removeFromCell(from, task)) {
+      cells.computeIfAbsent(to, k -> new ArrayList<>()).add(task);
+    }
+  }
+
+  /**
+   * Find the task closest to a point, within a distance of it.
+   *
+   * @param x the x coordinate of the point
+   * @param y the y coordinate of the point
+   * @param radius the largest distance from the point to look at
+   * @return the closest task, or null if there is none within the radius
+   */
+  public Task nearest(double x, double y, double radius) {
+    Task nearest = null;
+    double nearestDistance = radius;
+    long minColumn = cell(x - radius);
+    long maxColumn = cell(x + radius);
+    long minRow = cell(y - radius);
+    long maxRow = cell(y + radius);
+    for (long column = minColumn; column <= maxColumn; column++) {
+      for (long row = minRow; row <= maxRow; row++) {
+        ArrayList<Task> cell = cells.get(pack(column, row));
+        if (cell == null) {
+          continue;
+        }
+        for (Task task : cell) {
+          double distance = Math.hypot(task.x() - x, task.y() - y);
+          if (distance <= nearestDistance) {
+            nearest = task;
+            nearestDistance = distance;
+          }
+        }
+      }
+    }
+    return nearest;
+  }
+
+  /**
+   * Find the tasks positioned within a rectangle, edges included.
+   *
+   * @param minX the left of the rectangle
+   * @param minY the top of the rectangle
+   * @param maxX the right of the rectangle
+   * @param maxY the bottom of the rectangle
+   * @return the tasks in the rectangle, in no particular order
+   */
+  public List<Task> query(double minX, double minY, double maxX, double maxY) {
+    List<Task> found = new ArrayList<>();
+    if (minX > maxX || minY > maxY) {
+      return found;
+    }
+    long minColumn = cell(minX);
+    long maxColumn = cell(maxX);
+    long minRow = cell(minY);
+    long maxRow = cell(maxY);
+    double covered = (double) (maxColumn - minColumn + 1) * (maxRow - minRow + 1);
+    if (covered > cells.size()) {
+      // a rectangle bigger than the tasks' spread is cheaper to answer from the cells in use
+      for (Map.Entry<Long, ArrayList<Task>> entry : cells.entrySet()) {
+        long column = entry.getKey() >> 32;
+        long row = (int) (long) entry.getKey();
+        if (column >= minColumn && column <= maxColumn && row >= minRow && row <= maxRow) {
+          collect(entry.getValue(), minX, minY, maxX, maxY, found);
+        }
+      }
+      return found;
+    }
+    for (long column = minColumn; column <= maxColumn; column++) {
+      for (long row = minRow; row <= maxRow; row++) {
+        ArrayList<Task> cell = cells.get(pack(column, row));
+        if (cell != null) {
+          collect(cell, minX, minY, maxX, maxY, found);
+        }
+      }
+    }
+    return found;
+  }
+
+  private static void collect(ArrayList<Task> cell, double minX, double minY, double maxX, double maxY, List<Task> found) {
+    for (Task task : cell) {
+      if (task.x() >= minX && task.x() <= maxX && task.y() >= minY && task.y() <= maxY) {
+        found.add(task);
+      }
+    }
+  }
+
+  private boolean removeFromCell(long key, Task task) {
+    ArrayList<Task> cell = cells.get(key);
+    if (cell == null) {
+      return false;
+    }
+    // swap the task with the last one, since the order within a cell doesn't matter
+    int i = cell.indexOf(task);
+    if (i == -1) {
+      return false;
+    }
+    cell.set(i, cell.get(cell.size() - 1));
+    cell.remove(cell.size() - 1);
+    if (cell.isEmpty()) {
+      cells.remove(key);
+    }
+    return true;
+  }
+
+  private long cell(double coordinate) {
+    return (long) Math.floor(coordinate / cellSize);
+  }
+
+  private long key(double x, double y) {
+    return pack(cell(x), cell(y));
+  }
+
+  private static long pack(long column, long row) {
+    return (column << 32) | (row & 0xFFFFFFFFL);
+  }
+}
@@ -1,13 +1,5 @@
 package taskChainPlanner;
 
-import java.util.ArrayList;
-import java.util.Comparator;
-import java.util.List;
-import java.util.HashMap;
-import java.util.HashSet;
-import java.util.Stack;
-import java.lang.Math;
-
 public class Task {
   /*
    The task class is a named task with a set of flags to indicate its state.
@@ -17,6 +9,12 @@ public class Task {
    FLAG_ASSIGNED - Assigned
    FLAG_COMPLETE - Complete
 
+   Each task also counts its pending dependencies, the ones that aren't
+   Complete yet, and a task that isn't Assigned or Complete is Ready exactly
+   when it has none. The count is set by the sorts and kept up to date by
+   a TaskProgress, so completing or reopening a task only has to update
+   its own dependants.
+
    The id and priority are not set at initialization, but are set by the sorting algorithm.
    The sorting algorithm is a topological sort over a directed acyclic graph (DAG) of tasks.
    The algorithm is a static method on this class because its defined in a way that only makes
@@ -32,6 +30,9 @@ public class Task {
   private double y;
   private int id;
   private int priority;
+  private int pendingDependencies;
+  private double duration = 1;
+  private SpatialIndex index;
 
   public Task(double x, double y) {
     this.x = x;
@@ -48,8 +49,22 @@ public class Task {
   }
 
   public void setPos(double x, double y) {
+    double oldX = this.x;
+    double oldY = this.y;
     this.x = x;
     this.y = y;
+    if (index != null) {
+      index.move(this, oldX, oldY);
+    }
+  }
+
+  /**
+   * Set the spatial index the task reports its moves to, done by the index itself.
+   *
+   * @param index the index the task is in, or null if it isn't indexed
+   */
+  void setIndex(SpatialIndex index) {
+    this.index = index;
   }
 
   public double x() {
@@ -60,6 +75,24 @@ public class Task {
     return y;
   }
 
+  /**
+   * Set the estimated duration of the task, in whatever unit the plan uses,
+   * which the critical path is measured in. Tasks take 1 unit by default.
+   *
+   * @param duration the estimated duration
+   * @throws IllegalArgumentException if the duration is negative or not a number
+   */
+  public void setDuration(double duration) {
+    if (!(duration >= 0) || Double.isInfinite(duration)) {
+      throw new IllegalArgumentException("The duration must be a non-negative number: " + duration);
+    }
+    this.duration = duration;
+  }
+
+  public double duration() {
+    return duration;
+  }
+
   public void setId(int id) {
     this.id = id;
   }
@@ -112,10 +145,40 @@ public class Task {
     flags &= ~FLAG_COMPLETE;
   }
 
+  /**
+   * @return the number of the task's dependencies that aren't Complete
+   */
+  public int pendingDependencies() {
+    return pendingDependencies;
+  }
+
+  /**
+   * Set the number of the task's dependencies that aren't Complete, and derive
+   * whether it is Ready from it. Assigned and Complete tasks are never Ready.
+   *
+   * @param pendingDependencies the number of dependencies that aren't Complete
+   */
+  void setPendingDependencies(int pendingDependencies) {
+    this.pendingDependencies = pendingDependencies;
+    if (pendingDependencies == 0 && !isAssigned() && !isComplete()) {
+      setReady();
+    } else {
+      resetReady();
+    }
+  }
+
   public void clearBitflags() {
     flags &= 0;
   }
 
+  public void setBitflags(int flags) {
+    this.flags = flags;
+  }
+
+  public int bitflags() {
+    return flags;
+  }
+
   public String taskState() {
     if (isComplete()) {
       return "Complete";
@@ -134,83 +197,55 @@ public class Task {
    * The sorting works by iteratively identifying tasks with no dependencies, and assigns them with an
    * incremental id, and a priority equal to the maximum id of its dependencies. The tasks within each
    * iteration's set are then sorted based on the descending count of their dependants. The final result
-   * is that the priority queue is primarily sorted in an order which guarantees that tasks with no
+   * is that the sorted tasks are primarily sorted in an order which guarantees that tasks with no
    * dependencies are at the front, secondarily by the maximum id of their dependencies, and tertiarily
    * by the descending count of their dependants. In other words, within each iteration set, the tasks
    * in front are the ones which will maximally increase the number of tasks that can be completed in
    * parallel.
    *
+   * The work is done by the TaskSorter, which keeps a counter of unfinished dependencies per task
+   * and an index of dependants, so each iteration only touches the edges of the tasks it removes.
+   * Ties in the dependants count keep the graph's node iteration order.
+   *
+   * The result is an immutable snapshot, so it can be read any number of times
+   * without sorting again.
+   *
+   * The sort doesn't change whether a task is Assigned or Complete. It counts each
+   * task's pending dependencies, and the other tasks are Ready once they have none.
+   *
+   * @param graph the directed acyclic graph of tasks
+   * @return the tasks sorted by priority
+   */
+  public static SortedTasks sortTasks(DirectedAcyclicGraph<Task> graph) {
+      return TaskSorter.sort(graph);
+  }
+
+  /**
+   * Performs the same sort as sortTasks, optionally splitting the work within each iteration's set
+   * over the common ForkJoinPool. The result is identical to the sequential sort, and graphs too small
+   * to benefit from it are sorted sequentially anyway.
+   *
+   * @param graph the directed acyclic graph of tasks
+   * @param parallel whether to sort wide iteration sets in parallel
+   * @return the tasks sorted by priority
+   */
+  public static SortedTasks sortTasks(DirectedAcyclicGraph<Task> graph, boolean parallel) {
+      return TaskSorter.sort(graph.freeze(), parallel);
+  }
+
+  /**
+   * Performs the same sort as sortTasks, but orders the tasks within each iteration's set in the
+   * given mode. In CRITICAL_PATH mode, the tasks are ordered by their bottom level, the longest total
+   * duration of any chain of tasks from them through their dependants, so the tasks on the longest
+   * chains are given the lowest ids and are started first. Ties fall back to the dependants count.
+   * The sorted tasks then also hold the critical path of the graph.
+   *
    * @param graph the directed acyclic graph of tasks
-   * @return a priority queue of tasks sorted by priority
+   * @param mode how to order the tasks within each iteration's set
+   * @return the tasks sorted by priority
    */
-  public static PriorityQueue<Task> sortTasks(DirectedAcyclicGraph<Task> graph) {
-      DirectedAcyclicGraph<Task> graphCopy = graph.clone();
-
-      Comparator<Task> taskComparator = (a, b) -> {
-        if (a.priority() == b.priority()) {
-          return Integer.compare(a.id(), b.id());
-        }
-        return Integer.compare(a.priority(), b.priority());
-      };
-      PriorityQueue<Task> sortedTasks = new PriorityQueue<>(taskComparator);
-
-      int taskEnumerator = 0;
-      int tasksLeft = graphCopy.size();
-      boolean firstIteration = true;
-      while (tasksLeft > 0) {
-        // Identify all tasks with no dependencies
-        List<Task> tasks = new ArrayList<>();
-        for (Task task : graphCopy.nodes()) {
-          if (graphCopy.get(task).isEmpty()) {
-              if (firstIteration) {
-                task.setReady();
-              } else {
-                task.clearBitflags();
-              }
-              tasks.add(task);
-          }
-        }
-        tasksLeft -= tasks.size();
-        firstIteration = false;
-
-        // Count the number of dependants for each task
-        int[] dependantsCounts = new int[tasks.size()];
-        for (int i = 0; i < tasks.size(); i++) {
-          Task task = tasks.get(i);
-          for (Task t : graphCopy.nodes()) {
-            if (graphCopy.get(t).contains(task)) {
-              dependantsCounts[i]++;
-            }
-          }
-        }
-
-        // Determine the descending dependants count order
-        List<Integer> indices = new ArrayList<>();
-        for (int i = 0; i < tasks.size(); i++) {
-          indices.add(i);
-        }
-        indices.sort((a, b) -> Integer.compare(dependantsCounts[b], dependantsCounts[a]));
-
-        // Process tasks in order of descending dependants count
-        for (int i = 0; i < tasks.size(); i++) {
-          Task task = tasks.get(indices.get(i));
-
-          // Assign an incremental id to the task
-          task.setId(taskEnumerator++);
-
-          // Assign -1 to tasks with no dependencies, or the max id of its dependencies
-          int maxPriority = -1;
-          for (Task dependency : graph.get(task)) { // using original graph because the copy has been modified
-            maxPriority = Math.max(maxPriority, dependency.id());
-          }
-          task.setPriority(maxPriority);
-
-          // Remove the task from the graph copy and add it to the sorted list
-          graphCopy.removeNode(task);
-          sortedTasks.offer(task);
-        }
-      }
-      return sortedTasks;
+  public static SortedTasks sortTasks(DirectedAcyclicGraph<Task> graph, TaskSorter.SortMode mode) {
+      return TaskSorter.sort(graph.freeze(), false, mode);
   }
 
   @Override
@@ -219,6 +254,7 @@ public class Task {
       sb.append("Task{name='").append(name).append('\'')
         .append(", id=").append(id)
         .append(", priority=").append(priority)
+        .append(", duration=").append(duration)
         .append(", flags=").append(Integer.toBinaryString(flags))
         .append('}');
       return sb.toString();
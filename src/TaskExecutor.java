@@ -0,0 +1,341 @@
+package taskChainPlanner;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+public class TaskExecutor {
+  /*
+   The task executor runs an action for each task of a graph on an executor,
+   starting every task as soon as all of its dependencies have completed.
+
+   Each task counts the dependencies it is still waiting on, its pending
+   dependencies, and when a task completes, the counts of its dependants
+   are decremented, so
+   finishing a task only touches its own edges. Tasks whose counter reaches
+   zero are Ready, and wait in a heap ordered by their rank in the sorted
+   tasks, so whenever there are more ready tasks than free workers, they
+   are started in the same order as Task.sortTasks would list them.
+
+   Example (A depends on B and C, B depends on C, D is on its own):
+   start:         C, D ready       A waits on 2, B waits on 1
+   C completes:   B ready          A waits on 1
+   B completes:   A ready
+
+   A task moves from Ready to Assigned when it is started, and to Complete
+   when its action returns. The executor decides which threads the actions
+   run on, so a pool bounds the actions by its threads, and an executor of
+   virtual threads runs every ready task at once. The parallelism bounds the
+   number of running actions on top of that.
+
+   The first action to throw fails the whole run, which stops any further
+   task from being started, and leaves the failed task Ready so it can be
+   run again. Cancelling the run stops further tasks from being started
+   too. In both cases, the actions already running are left to finish.
+
+   Tasks that are already Complete when the run starts are not run again,
+   and only count as dependencies the other tasks wait on while they are
+   not Complete, the same as in Task.sortTasks.
+
+   The graph is frozen when the executor is created, so it can be edited
+   while the tasks run without affecting the run, but the tasks' state flags
+   are set from the worker threads, so they shouldn't be edited meanwhile.
+   Creating an executor doesn't change the tasks' ids or priorities.
+  */
+  private final CompactGraph<Task> graph;
+  private final Task[] tasks;
+  private final int[] rankOfIndex;
+  private final int[] indexOfRank;
+  private final PriorityQueue<Integer> ready;
+  private final Executor executor;
+  private final int parallelism;
+  private final CompletableFuture<Void> done = new CompletableFuture<>();
+  private Action action;
+  private int running = 0;
+  private int completed = 0;
+  private boolean dispatching = false;
+  private TaskFailedException failure;
+
+  /**
+   * The work done for each task, which may run on any thread.
+   */
+  @FunctionalInterface
+  public interface Action {
+    void run(Task task) throws Exception;
+  }
+
+  /**
+   * Thrown by a run whose action failed for a task, with the action's exception as the cause.
+   */
+  public static class TaskFailedException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    // tasks aren't serializable, so a deserialized exception has none
+    private final transient Task task;
+
+    TaskFailedException(Task task, Throwable cause) {
+      super("Task '" + task.name() + "' failed", cause);
+      this.task = task;
+    }
+
+    /**
+     * @return the task whose action failed
+     */
+    public Task task() {
+      return task;
+    }
+  }
+
+  /**
+   * Create an executor for the tasks of a graph, in the order Task.sortTasks would
+   * list them, with no bound on the number of running actions besides the executor's own.
+   * The order is worked out from a snapshot of the graph, without sorting the tasks themselves.
+   *
+   * @param graph the directed acyclic graph of tasks
+   * @param executor the executor to run the actions on
+   */
+  public TaskExecutor(DirectedAcyclicGraph<Task> graph, Executor executor) {
+    this(graph.freeze(), null, executor, Integer.MAX_VALUE);
+  }
+
+  /**
+   * Create an executor for the tasks of a graph, starting ready tasks in the given order.
+   * The order only decides which ready task is started first, dependencies
+   * are always respected, so it can come from an IncrementalTaskSorter
+   * instead of sorting the graph again.
+   *
+   * @param graph the directed acyclic graph of tasks
+   * @param order the tasks of the graph, each once, in the order to prefer them,
+   *        or null for the order Task.sortTasks would list them in
+   * @param executor the executor to run the actions on
+   * @param parallelism the most actions to run at once
+   * @throws IllegalArgumentException if the order doesn't hold each task of the graph once,
+   *         or the parallelism is not positive
+   */
+  public TaskExecutor(DirectedAcyclicGraph<Task> graph, SortedTasks order, Executor executor, int parallelism) {
+    this(graph.freeze(), order, executor, parallelism);
+  }
+
+  /**
+   * @param graph the compact snapshot of the graph of tasks
+   * @param order the tasks of the graph in the order to prefer them, or null for the sorted order
+   * @param executor the executor to run the actions on
+   * @param parallelism the most actions to run at once
+   */
+  private TaskExecutor(CompactGraph<Task> graph, SortedTasks order, Executor executor, int parallelism) {
+    if (parallelism < 1) {
+      throw new IllegalArgumentException("The parallelism must be positive: " + parallelism);
+    }
+    this.graph = graph;
+    this.executor = executor;
+    this.parallelism = parallelism;
+
+    int n = graph.size();
+    tasks = new Task[n];
+    rankOfIndex = new int[n];
+    if (order == null) {
+      indexOfRank = TaskSorter.sortedIndices(graph, TaskSorter.SortMode.DEPENDANTS);
+      for (int rank = 0; rank < n; rank++) {
+        tasks[rank] = graph.node(indexOfRank[rank]);
+        rankOfIndex[indexOfRank[rank]] = rank;
+      }
+    } else {
+      if (order.size() != n) {
+        throw new IllegalArgumentException("The order has " + order.size() + " tasks, the graph has " + n);
+      }
+      indexOfRank = new int[n];
+      boolean[] seen = new boolean[n];
+      for (int rank = 0; rank < n; rank++) {
+        Task task = order.get(rank);
+        int index = graph.indexOf(task);
+        if (index == -1 || seen[index]) {
+          throw new IllegalArgumentException("The order doesn't match the graph at " + task);
+        }
+        seen[index] = true;
+        tasks[rank] = task;
+        rankOfIndex[index] = rank;
+        indexOfRank[rank] = index;
+      }
+    }
+    ready = new PriorityQueue<Integer>(Integer::compare, Math.max(n, 1));
+  }
+
+  /**
+   * Start running the tasks. Complete tasks are left as they are and not run.
+   * Every other task counts its dependencies that aren't Complete, the ones
+   * with none are made Ready, and as many of them are started as allowed.
+   *
+   * @param action the work to do for each task
+   * @return a future completed once every task is Complete, completed exceptionally
+   *         with a TaskFailedException if an action throws, and which can be
+   *         cancelled to stop starting tasks
+   * @throws IllegalStateException if the executor was already started
+   */
+  public CompletableFuture<Void> start(Action action) {
+    synchronized (this) {
+      if (this.action != null) {
+        throw new IllegalStateException("The executor was already started");
+      }
+      this.action = action;
+      int[] offsets = graph.outOffsets();
+      int[] dependencies = graph.outTargets();
+      for (int rank = 0; rank < tasks.length; rank++) {
+        Task task = tasks[rank];
+        if (task.isComplete()) {
+          completed++;
+          continue;
+        }
+        int index = indexOfRank[rank];
+        int pendingDependencies = 0;
+        for (int e = offsets[index]; e < offsets[index + 1]; e++) {
+          if (!graph.node(dependencies[e]).isComplete()) {
+            pendingDependencies++;
+          }
+        }
+        task.clearBitflags();
+        task.setPendingDependencies(pendingDependencies);
+        if (task.isReady()) {
+          ready.offer(rank);
+        }
+      }
+      dispatch();
+    }
+    settle();
+    return done;
+  }
+
+  /**
+   * @return the future of the run, the same as returned by start
+   */
+  public CompletableFuture<Void> future() {
+    return done;
+  }
+
+  /**
+   * Stop starting tasks, leaving the running actions to finish.
+   *
+   * @return whether the run was cancelled, which it isn't if it had already finished
+   */
+  public boolean cancel() {
+    return done.cancel(false);
+  }
+
+  /**
+   * @return the number of tasks whose action is running
+   */
+  public synchronized int running() {
+    return running;
+  }
+
+  /**
+   * @return the number of tasks that are Complete
+   */
+  public synchronized int completed() {
+    return completed;
+  }
+
+  /**
+   * Start ready tasks in rank order until the parallelism is reached,
+   * unless the run is already over. An executor that runs actions on the
+   * calling thread finishes them from within this loop, and the tasks they
+   * release are left for the loop to start instead of dispatching again.
+   */
+  private void dispatch() {
+    if (dispatching) {
+      return;
+    }
+    dispatching = true;
+    while (!done.isDone() && failure == null && running < parallelism && !ready.isEmpty()) {
+      int rank = ready.poll();
+      Task task = tasks[rank];
+      task.clearBitflags();
+      task.setAssigned();
+      running++;
+      try {
+        executor.execute(() -> run(rank));
+      } catch (RejectedExecutionException e) {
+        running--;
+        task.clearBitflags();
+        task.setReady();
+        failure = new TaskFailedException(task, e);
+      }
+    }
+    dispatching = false;
+  }
+
+  /**
+   * Run the action of a task on a worker, then record how it finished.
+   *
+   * @param rank the rank of the task
+   */
+  private void run(int rank) {
+    Throwable thrown = null;
+    try {
+      action.run(tasks[rank]);
+    } catch (Throwable t) {
+      thrown = t;
+    }
+    synchronized (this) {
+      running--;
+      Task task = tasks[rank];
+      task.clearBitflags();
+      if (thrown != null) {
+        task.setReady();
+        if (failure == null) {
+          failure = new TaskFailedException(task, thrown);
+        }
+      } else {
+        task.setComplete();
+        completed++;
+        release(rank);
+        dispatch();
+      }
+    }
+    // run on the calling thread by dispatch, the lock is still held by
+    // start or an outer run, which settle once they have released it
+    if (!Thread.holdsLock(this)) {
+      settle();
+    }
+  }
+
+  /**
+   * Decrement the pending dependencies of a completed task's dependants,
+   * making those with none left Ready. Dependants that were Complete
+   * before the run were never given a count by start, so they are skipped.
+   *
+   * @param rank the rank of the completed task
+   */
+  private void release(int rank) {
+    int[] offsets = graph.inOffsets();
+    int[] dependants = graph.inTargets();
+    int index = indexOfRank[rank];
+    for (int e = offsets[index]; e < offsets[index + 1]; e++) {
+      Task task = tasks[rankOfIndex[dependants[e]]];
+      if (task.isComplete()) {
+        continue;
+      }
+      task.setPendingDependencies(task.pendingDependencies() - 1);
+      if (task.isReady()) {
+        ready.offer(rankOfIndex[dependants[e]]);
+      }
+    }
+  }
+
+  /**
+   * Complete the future if the run is over. Completing it runs the
+   * callers' callbacks, so this is only called once the lock is released.
+   */
+  private void settle() {
+    TaskFailedException failed;
+    boolean finished;
+    synchronized (this) {
+      failed = failure;
+      finished = completed == tasks.length;
+    }
+    if (failed != null) {
+      done.completeExceptionally(failed);
+    } else if (finished) {
+      done.complete(null);
+    }
+  }
+}
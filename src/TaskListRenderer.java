@@ -1,7 +1,9 @@
 package taskChainPlanner;
 
-import javafx.application.Platform;
+import javafx.geometry.Pos;
 import javafx.scene.control.ComboBox;
+import javafx.scene.control.ListCell;
+import javafx.scene.control.ListView;
 import javafx.scene.layout.Pane;
 import javafx.scene.paint.Color;
 import javafx.scene.shape.Rectangle;
@@ -9,10 +11,29 @@ import javafx.scene.text.Text;
 import javafx.scene.text.Font;
 import javafx.scene.text.TextAlignment;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Set;
+import java.util.WeakHashMap;
 
 public class TaskListRenderer {
+    /*
+     The task list is a ListView, which only creates cells for the rows
+     that are visible, and reuses them for other tasks while scrolling.
+     Each cell builds its rectangle, text and dropdown once, and only
+     updates them when it is given a task, so the number of controls
+     stays the same no matter how many tasks there are.
+
+     State changes made in a dropdown go through the task progress, which
+     reports every task whose state changed as a result, and only the
+     cells showing one of those tasks are updated. The ListView drops and
+     recreates cells, on a resize or a skin change for example, so the
+     cells are held weakly, and the dropped ones are left to be collected.
+    */
     private Pane taskGroup;
+    private ListView<Task> taskList;
+    private TaskProgress taskProgress;
+    private Set<TaskCell> cells = Collections.newSetFromMap(new WeakHashMap<>());
     private static final double TASK_WIDTH = 200;
     private static final double TASK_HEIGHT = 50;
     private static final double PADDING = 10;
@@ -21,9 +42,23 @@ public class TaskListRenderer {
      * Create a task list renderer with the given task group
      *
      * @param taskGroup Pane to render tasks on
+     * @param taskProgress TaskProgress to make state changes through
      */
-    public TaskListRenderer(Pane taskGroup) {
+    public TaskListRenderer(Pane taskGroup, TaskProgress taskProgress) {
         this.taskGroup = taskGroup;
+        this.taskProgress = taskProgress;
+        this.taskList = new ListView<>();
+        taskList.setFixedCellSize(TASK_HEIGHT + PADDING);
+        taskList.setCellFactory(listView -> {
+            TaskCell cell = new TaskCell(taskProgress);
+            cells.add(cell);
+            return cell;
+        });
+        taskProgress.setOnStateChanged(this::showState);
+        taskList.setFocusTraversable(false);
+        taskList.prefWidthProperty().bind(taskGroup.widthProperty());
+        taskList.prefHeightProperty().bind(taskGroup.heightProperty());
+        taskGroup.getChildren().add(taskList);
     }
 
     /**
@@ -32,7 +67,7 @@ public class TaskListRenderer {
      * @param task Task to check state for
      * @return List<String> representing the valid state transitions
      */
-    private List<String> getAvailableStates(Task task) {
+    private static List<String> getAvailableStates(Task task) {
         List<String> states = new ArrayList<>();
         if (task.isComplete()) {
             states.add("Assigned");
@@ -47,75 +82,100 @@ public class TaskListRenderer {
     }
 
     /**
-     * Render a task on the task group
+     * Render a list of tasks on the task group
      *
-     * @param task Task to be rendered
-     * @param yPos Y position of the task
-     * @param isAlternateColor Whether the task should have an alternate color
-     * @return Rectangle representing the task
+     * The tasks are only read, so the same sorted tasks can be rendered again
+     *
+     * @param tasks SortedTasks to be rendered
      */
-    private Rectangle renderTask(Task task, double yPos, boolean isAlternateColor) {
-        Rectangle taskRectangle = new Rectangle(TASK_WIDTH, TASK_HEIGHT);
-        taskRectangle.setFill(isAlternateColor ? Color.LIGHTBLUE : Color.DODGERBLUE);
-        taskRectangle.setArcWidth(10);
-        taskRectangle.setArcHeight(10);
+    public void renderTasks(SortedTasks tasks) {
+        taskList.getItems().setAll(tasks.asList());
+    }
 
-        Text taskNameText = new Text(task.name());
-        taskNameText.setFont(new Font(14));
-        taskNameText.setWrappingWidth(TASK_WIDTH);
-        taskNameText.setTextAlignment(TextAlignment.CENTER);
+    /**
+     * Show the new state of a task in the cell showing it, if any
+     *
+     * @param task Task whose state changed
+     */
+    private void showState(Task task) {
+        for (TaskCell cell : cells) {
+            if (cell.getItem() == task && !cell.isEmpty() && cell.getListView() == taskList) {
+                cell.showState(task);
+            }
+        }
+    }
 
-        ComboBox<String> stateDropdown = new ComboBox<>();
-        stateDropdown.getItems().addAll(getAvailableStates(task));
-        stateDropdown.setValue(task.taskState());
+    /**
+     * A row of the task list, reused for whichever task scrolls into it
+     */
+    private static class TaskCell extends ListCell<Task> {
+        private final Pane row = new Pane();
+        private final Rectangle taskRectangle = new Rectangle(TASK_WIDTH, TASK_HEIGHT);
+        private final Text taskNameText = new Text();
+        private final ComboBox<String> stateDropdown = new ComboBox<>();
+        private boolean updating = false;
 
-        taskRectangle.setLayoutY(yPos);
-        taskNameText.setLayoutY(yPos + 20);
-        stateDropdown.setLayoutY(yPos + 25);
+        TaskCell(TaskProgress taskProgress) {
+            taskRectangle.setArcWidth(10);
+            taskRectangle.setArcHeight(10);
 
-        stateDropdown.setOnAction(event -> {
-            String selectedState = stateDropdown.getValue();
-            task.clearBitflags();
-            switch (selectedState) {
-                case "Assigned":
-                    task.setAssigned();
-                    break;
-                case "Complete":
-                    task.setComplete();
-                    break;
-                case "Ready":
-                    task.setReady();
-                    break;
-            }
-        });
+            taskNameText.setFont(new Font(14));
+            taskNameText.setWrappingWidth(TASK_WIDTH);
+            taskNameText.setTextAlignment(TextAlignment.CENTER);
 
-        taskGroup.widthProperty().addListener((obs, oldWidth, newWidth) -> {
-            double centerX = (newWidth.doubleValue() - TASK_WIDTH) / 2;
-            taskRectangle.setLayoutX(centerX);
-            taskNameText.setLayoutX(centerX);
-            stateDropdown.setLayoutX(centerX);
-        });
+            taskNameText.setLayoutY(20);
+            stateDropdown.setLayoutY(25);
 
-        taskGroup.getChildren().addAll(taskRectangle, taskNameText, stateDropdown);
-        return taskRectangle;
-    }
+            // Changing the dropdown's items or value for a new task fires
+            // its action, which must not be taken as the user's choice
+            stateDropdown.setOnAction(event -> {
+                Task task = getItem();
+                String selectedState = stateDropdown.getValue();
+                if (updating || task == null || selectedState == null) {
+                    return;
+                }
+                switch (selectedState) {
+                    case "Assigned":
+                        taskProgress.setAssigned(task);
+                        break;
+                    case "Complete":
+                        taskProgress.setComplete(task);
+                        break;
+                    case "Ready":
+                        taskProgress.setReady(task);
+                        break;
+                }
+            });
 
-    /**
-     * Render a list of tasks on the task group
-     *
-     * @param tasks PriorityQueue of tasks to be rendered
-     */
-    public void renderTasks(PriorityQueue<Task> tasks) {
-        taskGroup.getChildren().clear();
+            row.getChildren().addAll(taskRectangle, taskNameText, stateDropdown);
+            row.setPrefSize(TASK_WIDTH, TASK_HEIGHT);
+            setAlignment(Pos.CENTER);
+            setStyle("-fx-background-color: transparent; -fx-padding: 0;");
+        }
 
-        double yPos = PADDING;
-        boolean isAlternateColor = false;
+        @Override
+        protected void updateItem(Task task, boolean empty) {
+            super.updateItem(task, empty);
+            if (empty || task == null) {
+                setGraphic(null);
+                return;
+            }
+            taskRectangle.setFill(getIndex() % 2 == 1 ? Color.LIGHTBLUE : Color.DODGERBLUE);
+            taskNameText.setText(task.name());
+            showState(task);
+            setGraphic(row);
+        }
 
-        while (!tasks.isEmpty()) {
-            Task task = tasks.poll();
-            renderTask(task, yPos, isAlternateColor);
-            yPos += TASK_HEIGHT + PADDING;
-            isAlternateColor = !isAlternateColor;
+        /**
+         * Show a task's state and the states it can move to in the dropdown
+         *
+         * @param task Task whose state is shown
+         */
+        private void showState(Task task) {
+            updating = true;
+            stateDropdown.getItems().setAll(getAvailableStates(task));
+            stateDropdown.setValue(task.taskState());
+            updating = false;
         }
     }
 }
@@ -3,18 +3,24 @@ package taskChainPlanner;
 import javafx.scene.layout.Pane;
 
 public class TaskManagementController {
-    private PriorityQueue<Task> sortedTasks;
+    private SortedTasks sortedTasks;
     private TaskListRenderer taskListRenderer;
 
     /**
      * Constructor for TaskManagementController
      *
-     * @param graph DirectedAcyclicGraph<Task> graph
+     * The tasks are sorted by the incremental sorter, which only
+     * recomputes what changed in the graph since the last sort, and
+     * their states are changed through the task progress, which updates
+     * their dependants as they are completed or reopened.
+     *
+     * @param taskSorter IncrementalTaskSorter taskSorter for the graph
+     * @param taskProgress TaskProgress taskProgress for the graph
      * @param taskManagementPane Pane taskManagementPane
      */
-    public TaskManagementController(DirectedAcyclicGraph<Task> graph, Pane taskManagementPane) {
-        this.sortedTasks = Task.sortTasks(graph);
-        this.taskListRenderer = new TaskListRenderer(taskManagementPane);
+    public TaskManagementController(IncrementalTaskSorter taskSorter, TaskProgress taskProgress, Pane taskManagementPane) {
+        this.sortedTasks = taskSorter.sortTasks();
+        this.taskListRenderer = new TaskListRenderer(taskManagementPane, taskProgress);
         renderTasks();
     }
 
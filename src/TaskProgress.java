@@ -0,0 +1,156 @@
+package taskChainPlanner;
+
+import java.util.ArrayList;
+import java.util.function.Consumer;
+
+public class TaskProgress implements DirectedAcyclicGraph.Listener<Task> {
+  /*
+   Task progress keeps the states of a graph's tasks consistent as they are
+   assigned, completed and reopened, and as the graph is edited.
+
+   Each task counts its pending dependencies, the ones that aren't Complete,
+   and a task that isn't Assigned or Complete is Ready when it has none.
+   Completing a task decrements the counters of its dependants, and the
+   ones that reach zero become Ready. Reopening a Complete task increments
+   them again, and the ones that were Ready stop being so. Either way, a
+   state change only touches the task's own dependants, instead of sorting
+   the whole graph again.
+
+   Example (A depends on B and C, B depends on C):
+   start:         C ready          A waits on 2, B waits on 1
+   C completes:   B ready          A waits on 1
+   C reopened:    C ready          A waits on 2, B waits on 1
+
+   The progress also listens to the graph, since inserting an edge to a task
+   that isn't Complete adds a pending dependency, and removing one takes it
+   away. Each task whose state changes is reported to the state listener,
+   so a view can update just the tasks it shows.
+  */
+  private final DirectedAcyclicGraph<Task> graph;
+  private Consumer<Task> onStateChanged = task -> {};
+
+  /**
+   * Count the pending dependencies of a graph's tasks, and start following its changes.
+   *
+   * @param graph the directed acyclic graph of tasks
+   */
+  public TaskProgress(DirectedAcyclicGraph<Task> graph) {
+    this.graph = graph;
+    for (Task task : graph.nodes()) {
+      nodeInserted(task);
+    }
+    graph.addListener(this);
+  }
+
+  /**
+   * Stop following the graph's changes, once the progress is no longer used.
+   */
+  public void detach() {
+    graph.removeListener(this);
+  }
+
+  /**
+   * Set the listener told about each task whose state changed.
+   *
+   * @param onStateChanged the listener, or null for none
+   */
+  public void setOnStateChanged(Consumer<Task> onStateChanged) {
+    this.onStateChanged = onStateChanged == null ? task -> {} : onStateChanged;
+  }
+
+  /**
+   * Mark a task Complete, making the dependants it was the last pending dependency of Ready.
+   *
+   * @param task the task to complete
+   */
+  public void setComplete(Task task) {
+    if (task.isComplete()) {
+      return;
+    }
+    task.clearBitflags();
+    task.setComplete();
+    task.setPendingDependencies(task.pendingDependencies());
+    onStateChanged.accept(task);
+    for (Task dependant : graph.dependants(task)) {
+      adjustPending(dependant, -1);
+    }
+  }
+
+  /**
+   * Mark a task Assigned, reopening it if it was Complete.
+   *
+   * @param task the task to assign
+   */
+  public void setAssigned(Task task) {
+    boolean reopened = task.isComplete();
+    task.clearBitflags();
+    task.setAssigned();
+    task.setPendingDependencies(task.pendingDependencies());
+    onStateChanged.accept(task);
+    if (reopened) {
+      reopenDependants(task);
+    }
+  }
+
+  /**
+   * Stop a task being Assigned or Complete, reopening it if it was Complete.
+   * It is Ready if its dependencies are all Complete, and Not Ready otherwise.
+   *
+   * @param task the task to make Ready
+   */
+  public void setReady(Task task) {
+    boolean reopened = task.isComplete();
+    task.clearBitflags();
+    task.setPendingDependencies(task.pendingDependencies());
+    onStateChanged.accept(task);
+    if (reopened) {
+      reopenDependants(task);
+    }
+  }
+
+  private void reopenDependants(Task task) {
+    for (Task dependant : graph.dependants(task)) {
+      adjustPending(dependant, 1);
+    }
+  }
+
+  /**
+   * Change the number of pending dependencies of a task, reporting it if its state changed.
+   *
+   * @param task the task to change
+   * @param change the number of pending dependencies added, or removed if negative
+   */
+  private void adjustPending(Task task, int change) {
+    boolean wasReady = task.isReady();
+    task.setPendingDependencies(task.pendingDependencies() + change);
+    if (task.isReady() != wasReady) {
+      onStateChanged.accept(task);
+    }
+  }
+
+  @Override
+  public void nodeInserted(Task task) {
+    int pendingDependencies = 0;
+    ArrayList<Task> dependencies = graph.get(task);
+    for (int i = 0; i < dependencies.size(); i++) {
+      if (!dependencies.get(i).isComplete()) {
+        pendingDependencies++;
+      }
+    }
+    task.setPendingDependencies(pendingDependencies);
+  }
+
+  @Override
+  public void edgeInserted(Task from, Task to) {
+    if (!to.isComplete()) {
+      adjustPending(from, 1);
+    }
+  }
+
+  @Override
+  public void edgeRemoved(Task from, Task to) {
+    if (!to.isComplete()) {
+      adjustPending(from, -1);
+    }
+  }
+}
@@ -0,0 +1,127 @@
+package taskChainPlanner;
+
+import static taskChainPlanner.TestSupport.check;
+import static taskChainPlanner.TestSupport.randomGraph;
+import static taskChainPlanner.TestSupport.tasks;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+
+public class CompactGraphTest {
+  /*
+   Checks that a frozen snapshot holds exactly the graph it was taken from:
+   the nodes in the graph's iteration order, and each node's outgoing and
+   incoming edges in the order of get and dependants. The snapshot must
+   not follow later edits, and building a graph back from its edges with
+   fromIndexedEdges must give the same graph.
+
+   fromIndexedEdges must also reject edges out of range, repeated edges,
+   cycles and repeated nodes.
+  */
+  private static final int GRAPHS = 300;
+
+  public static void main(String[] args) {
+    Random random = new Random(5);
+    for (int i = 0; i < GRAPHS; i++) {
+      DirectedAcyclicGraph<Task> graph = randomGraph(random, 1 + random.nextInt(50), random.nextInt(120));
+      CompactGraph<Task> compact = graph.freeze();
+      checkSnapshot(graph, compact);
+      checkRebuilt(graph, compact);
+
+      List<Task> nodes = new ArrayList<>(graph.nodes());
+      graph.removeNode(nodes.get(random.nextInt(nodes.size())));
+      graph.insertNode(new Task(0, 0));
+      check(compact.size() == nodes.size() && compact.node(0) == nodes.get(0), "the snapshot followed an edit");
+    }
+    DirectedAcyclicGraph<Task> empty = new DirectedAcyclicGraph<>();
+    checkSnapshot(empty, empty.freeze());
+    checkRejected();
+  }
+
+  private static void checkSnapshot(DirectedAcyclicGraph<Task> graph, CompactGraph<Task> compact) {
+    check(compact.size() == graph.size(), "froze " + compact.size() + " of " + graph.size() + " nodes");
+    check(compact.edgeCount() == graph.edgeCount(), "froze " + compact.edgeCount() + " of " + graph.edgeCount() + " edges");
+    check(compact.indexOf(new Task(0, 0)) == -1, "found a task that isn't in the snapshot");
+    int i = 0;
+    for (Task node : graph.nodes()) {
+      check(compact.node(i) == node && compact.indexOf(node) == i, "index " + i + " isn't " + node.name());
+      check(indices(compact, graph.get(node)).equals(slice(compact.outOffsets(), compact.outTargets(), i)),
+          "the edges from " + node.name() + " differ");
+      check(indices(compact, graph.dependants(node)).equals(slice(compact.inOffsets(), compact.inTargets(), i)),
+          "the edges to " + node.name() + " differ");
+      check(compact.outDegree(i) == graph.get(node).size() && compact.inDegree(i) == graph.dependants(node).size(),
+          "the degrees of " + node.name() + " differ");
+      i++;
+    }
+  }
+
+  private static void checkRebuilt(DirectedAcyclicGraph<Task> graph, CompactGraph<Task> compact) {
+    Task[] nodes = new Task[compact.size()];
+    int[] edges = new int[2 * compact.edgeCount()];
+    int[] offsets = compact.outOffsets();
+    int[] targets = compact.outTargets();
+    for (int i = 0, e = 0; i < nodes.length; i++) {
+      nodes[i] = compact.node(i);
+      for (int k = offsets[i]; k < offsets[i + 1]; k++) {
+        edges[e++] = i;
+        edges[e++] = targets[k];
+      }
+    }
+    DirectedAcyclicGraph<Task> rebuilt = DirectedAcyclicGraph.fromIndexedEdges(nodes, edges);
+    check(rebuilt.size() == graph.size() && rebuilt.edgeCount() == graph.edgeCount(), "the rebuilt graph has a different size");
+    for (Task node : graph.nodes()) {
+      // fromIndexedEdges orders each node's edges by index, so only compare what they are
+      check(new HashSet<>(rebuilt.get(node)).equals(new HashSet<>(graph.get(node))),
+          "the rebuilt edges from " + node.name() + " differ");
+      check(new HashSet<>(rebuilt.dependants(node)).equals(new HashSet<>(graph.dependants(node))),
+          "the rebuilt edges to " + node.name() + " differ");
+      for (Task neighbor : rebuilt.get(node)) {
+        check(rebuilt.position(node) < rebuilt.position(neighbor), "the rebuilt order is against " + node.name() + " -> " + neighbor.name());
+      }
+    }
+  }
+
+  private static void checkRejected() {
+    Task[] nodes = tasks(3).toArray(new Task[0]);
+    int[][] invalid = {
+      {0, 3},
+      {-1, 0},
+      {0, 1, 0, 1},
+      {0, 1, 1, 2, 2, 0},
+      {1, 1},
+    };
+    for (int[] edges : invalid) {
+      try {
+        DirectedAcyclicGraph.fromIndexedEdges(nodes, edges);
+        throw new AssertionError("built a graph from the edges " + Arrays.toString(edges));
+      } catch (IllegalArgumentException expected) {
+        // rejected as it should be
+      }
+    }
+    try {
+      DirectedAcyclicGraph.fromIndexedEdges(new Task[] {nodes[0], nodes[1], nodes[0]}, new int[] {0, 1});
+      throw new AssertionError("built a graph with a repeated node");
+    } catch (IllegalArgumentException expected) {
+      // rejected as it should be
+    }
+  }
+
+  private static List<Integer> indices(CompactGraph<Task> compact, List<Task> nodes) {
+    List<Integer> indices = new ArrayList<>();
+    for (Task node : nodes) {
+      indices.add(compact.indexOf(node));
+    }
+    return indices;
+  }
+
+  private static List<Integer> slice(int[] offsets, int[] targets, int i) {
+    List<Integer> slice = new ArrayList<>();
+    for (int e = offsets[i]; e < offsets[i + 1]; e++) {
+      slice.add(targets[e]);
+    }
+    return slice;
+  }
+}
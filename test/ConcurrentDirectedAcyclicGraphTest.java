@@ -0,0 +1,168 @@
+package taskChainPlanner;
+
+import static taskChainPlanner.TestSupport.check;
+import static taskChainPlanner.TestSupport.randomGraph;
+import static taskChainPlanner.TestSupport.tasks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+public class ConcurrentDirectedAcyclicGraphTest {
+  /*
+   Checks that the concurrent graph can be read while another thread edits
+   it. One thread inserts and removes nodes, edges and batches of edges at
+   random, while the others take snapshots and walk the copies handed out
+   by the graph.
+
+   Every snapshot must be consistent with a single point in time: each
+   edge listed from one end is listed to the other, the edge count matches
+   the edges, and there is no cycle. Walking copies and visiting edges must
+   never fail, and once the edits stop, the topological order must hold.
+  */
+  private static final int ROUNDS = 20;
+  private static final int EDITS = 5000;
+  private static final int READERS = 3;
+
+  public static void main(String[] args) throws Exception {
+    Random random = new Random(25);
+    ExecutorService readers = Executors.newFixedThreadPool(READERS);
+    try {
+      for (int i = 0; i < ROUNDS; i++) {
+        checkConcurrentEdits(random.nextLong(), readers);
+      }
+    } finally {
+      readers.shutdown();
+      readers.awaitTermination(10, TimeUnit.SECONDS);
+    }
+    checkCopy(random);
+  }
+
+  private static void checkConcurrentEdits(long seed, ExecutorService readers) throws Exception {
+    ConcurrentDirectedAcyclicGraph<Task> graph = new ConcurrentDirectedAcyclicGraph<>();
+    List<Task> tasks = tasks(40);
+    AtomicBoolean editing = new AtomicBoolean(true);
+    List<Future<Integer>> reads = new ArrayList<>();
+    for (int r = 0; r < READERS; r++) {
+      reads.add(readers.submit(() -> {
+        int snapshots = 0;
+        while (editing.get()) {
+          checkSnapshot(graph.freeze());
+          for (Task node : graph.nodes()) {
+            // a node removed since the nodes were copied has no edges
+            List<DirectedAcyclicGraph.Edge<Task>> edges = graph.edgesFrom(node);
+            for (int e = 0; edges != null && e < edges.size(); e++) {
+              check(edges.get(e).from == node, "got the edges of another node");
+            }
+          }
+          // the edge count read while visiting must match the edges visited, since no edit can come between
+          int[] visited = new int[1];
+          int[] edgeCount = new int[1];
+          graph.forEachEdge(edge -> {
+            if (visited[0]++ == 0) {
+              edgeCount[0] = graph.edgeCount();
+            }
+          });
+          check(visited[0] == 0 || visited[0] == edgeCount[0], "the graph was edited while its edges were visited");
+          snapshots++;
+        }
+        return snapshots;
+      }));
+    }
+
+    Random random = new Random(seed);
+    try {
+      for (int k = 0; k < EDITS; k++) {
+        Task from = tasks.get(random.nextInt(tasks.size()));
+        Task to = tasks.get(random.nextInt(tasks.size()));
+        int edit = random.nextInt(20);
+        if (edit == 0) {
+          graph.removeNode(from);
+        } else if (edit < 3) {
+          graph.insertNode(from);
+        } else if (edit < 6) {
+          graph.removeEdge(from, to);
+        } else if (edit == 6) {
+          List<DirectedAcyclicGraph.Edge<Task>> batch = new ArrayList<>();
+          for (int b = random.nextInt(5); b > 0; b--) {
+            Task batchFrom = tasks.get(random.nextInt(tasks.size()));
+            Task batchTo = tasks.get(random.nextInt(tasks.size()));
+            if (batchFrom != batchTo && graph.edge(batchFrom, batchTo) == null) {
+              batch.add(new DirectedAcyclicGraph.Edge<>(batchFrom, batchTo));
+            }
+          }
+          graph.insertEdges(batch);
+        } else {
+          graph.insertEdge(from, to);
+        }
+      }
+    } finally {
+      editing.set(false);
+    }
+    for (Future<Integer> read : reads) {
+      // rethrows a failed check or an exception from a reader
+      read.get(30, TimeUnit.SECONDS);
+    }
+
+    checkSnapshot(graph.freeze());
+    for (Task node : graph.nodes()) {
+      for (Task neighbor : graph.get(node)) {
+        check(graph.position(node) < graph.position(neighbor), node.name() + " -> " + neighbor.name() + " is against the order");
+      }
+    }
+  }
+
+  private static void checkSnapshot(CompactGraph<Task> compact) {
+    int n = compact.size();
+    int[] outOffsets = compact.outOffsets();
+    int[] outTargets = compact.outTargets();
+    int[] inOffsets = compact.inOffsets();
+    int[] inTargets = compact.inTargets();
+    check(outOffsets[n] == compact.edgeCount() && inOffsets[n] == compact.edgeCount(), "the snapshot's edge count is off");
+    int[] pending = new int[n];
+    for (int i = 0; i < n; i++) {
+      for (int e = outOffsets[i]; e < outOffsets[i + 1]; e++) {
+        int target = outTargets[e];
+        boolean listed = false;
+        for (int f = inOffsets[target]; f < inOffsets[target + 1]; f++) {
+          listed |= inTargets[f] == i;
+        }
+        check(listed, "the snapshot has an edge from " + compact.node(i).name() + " but not to " + compact.node(target).name());
+        pending[target]++;
+      }
+    }
+
+    // Kahn's algorithm, the snapshot is acyclic if every node is removed
+    int[] removing = new int[n];
+    int removed = 0;
+    for (int i = 0; i < n; i++) {
+      if (pending[i] == 0) {
+        removing[removed++] = i;
+      }
+    }
+    for (int k = 0; k < removed; k++) {
+      int i = removing[k];
+      for (int e = outOffsets[i]; e < outOffsets[i + 1]; e++) {
+        if (--pending[outTargets[e]] == 0) {
+          removing[removed++] = outTargets[e];
+        }
+      }
+    }
+    check(removed == n, "the snapshot has a cycle");
+  }
+
+  private static void checkCopy(Random random) {
+    DirectedAcyclicGraph<Task> source = randomGraph(random, 50, 150);
+    ConcurrentDirectedAcyclicGraph<Task> copy = new ConcurrentDirectedAcyclicGraph<>(source);
+    check(copy.size() == source.size() && copy.edgeCount() == source.edgeCount(), "the copy has a different size");
+    for (Task node : source.nodes()) {
+      check(copy.get(node).equals(source.get(node)), "the copy has different edges from " + node.name());
+      check(copy.get(node) != copy.get(node), "the copy handed out its own adjacency list");
+    }
+  }
+}
@@ -0,0 +1,128 @@
+package taskChainPlanner;
+
+import static taskChainPlanner.TestSupport.check;
+import static taskChainPlanner.TestSupport.randomGraph;
+import static taskChainPlanner.TestSupport.tasks;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Random;
+
+public class CriticalPathTest {
+  /*
+   Checks the bottom levels against a recursive definition, and that the
+   critical path is a chain of dependants from a task with no dependencies
+   to a task with no dependants, as long as the largest bottom level.
+
+   A sort in CRITICAL_PATH mode must keep the layers of the default sort,
+   order each layer by descending bottom level, then descending dependants
+   count, then node order, and hold the critical path of the graph.
+
+   Durations are whole numbers, some of them zero, so the sums are exact.
+  */
+  private static final int GRAPHS = 300;
+
+  public static void main(String[] args) {
+    Random random = new Random(22);
+    for (int i = 0; i < GRAPHS; i++) {
+      DirectedAcyclicGraph<Task> graph = randomGraph(random, 1 + random.nextInt(60), random.nextInt(150));
+      for (Task task : graph.nodes()) {
+        task.setDuration(random.nextInt(4) == 0 ? 0 : 1 + random.nextInt(9));
+      }
+      HashMap<Task, Double> bottomLevels = new HashMap<>();
+      for (Task task : graph.nodes()) {
+        bottomLevel(graph, task, bottomLevels);
+      }
+      checkPath(graph, CriticalPath.of(graph), bottomLevels);
+      checkSort(graph, bottomLevels);
+    }
+
+    CriticalPath empty = CriticalPath.of(new DirectedAcyclicGraph<>());
+    check(empty.length() == 0 && empty.tasks().isEmpty(), "an empty graph has a critical path");
+    try {
+      empty.bottomLevel(tasks(1).get(0));
+      throw new AssertionError("found the bottom level of a task that isn't in the graph");
+    } catch (IllegalArgumentException expected) {
+      // rejected as it should be
+    }
+  }
+
+  private static double bottomLevel(DirectedAcyclicGraph<Task> graph, Task task, HashMap<Task, Double> bottomLevels) {
+    Double known = bottomLevels.get(task);
+    if (known != null) {
+      return known;
+    }
+    double longest = 0;
+    for (Task dependant : graph.dependants(task)) {
+      longest = Math.max(longest, bottomLevel(graph, dependant, bottomLevels));
+    }
+    bottomLevels.put(task, task.duration() + longest);
+    return task.duration() + longest;
+  }
+
+  private static void checkPath(DirectedAcyclicGraph<Task> graph, CriticalPath path, HashMap<Task, Double> bottomLevels) {
+    double largest = 0;
+    for (Task task : graph.nodes()) {
+      check(path.bottomLevel(task) == bottomLevels.get(task),
+          task.name() + " has a bottom level of " + path.bottomLevel(task) + " instead of " + bottomLevels.get(task));
+      largest = Math.max(largest, bottomLevels.get(task));
+    }
+    check(path.length() == largest, "the critical path is " + path.length() + " long instead of " + largest);
+
+    List<Task> tasks = path.tasks();
+    check(!tasks.isEmpty() && graph.get(tasks.get(0)).isEmpty(), "the critical path doesn't start from a task with no dependencies");
+    check(graph.dependants(tasks.get(tasks.size() - 1)).isEmpty(), "the critical path doesn't end at a task with no dependants");
+    double length = 0;
+    for (int i = 0; i < tasks.size(); i++) {
+      if (i > 0) {
+        check(graph.get(tasks.get(i)).contains(tasks.get(i - 1)),
+            tasks.get(i).name() + " doesn't depend on " + tasks.get(i - 1).name() + " before it on the path");
+      }
+      length += tasks.get(i).duration();
+    }
+    check(length == path.length(), "the tasks on the critical path add up to " + length + " instead of " + path.length());
+  }
+
+  private static void checkSort(DirectedAcyclicGraph<Task> graph, HashMap<Task, Double> bottomLevels) {
+    List<Task> nodes = new ArrayList<>(graph.nodes());
+    HashMap<Task, Integer> layers = new HashMap<>();
+    for (Task task : nodes) {
+      layer(graph, task, layers);
+    }
+    List<Task> expected = new ArrayList<>(nodes);
+    expected.sort(Comparator.<Task>comparingInt(layers::get)
+        .thenComparing(bottomLevels::get, Comparator.reverseOrder())
+        .thenComparing(task -> graph.dependants(task).size(), Comparator.reverseOrder())
+        .thenComparingInt(nodes::indexOf));
+
+    SortedTasks sorted = TaskSorter.sort(graph.freeze(), false, TaskSorter.SortMode.CRITICAL_PATH);
+    check(sorted.criticalPath() != null && sorted.criticalPath().length() == CriticalPath.of(graph).length(),
+        "the sort doesn't hold the critical path");
+    for (int id = 0; id < expected.size(); id++) {
+      Task task = expected.get(id);
+      check(task.id() == id, task.name() + " has id " + task.id() + " instead of " + id);
+      int priority = -1;
+      for (Task dependency : graph.get(task)) {
+        priority = Math.max(priority, dependency.id());
+      }
+      check(task.priority() == priority, task.name() + " has priority " + task.priority() + " instead of " + priority);
+    }
+    check(TaskSorter.sort(graph.freeze(), false, TaskSorter.SortMode.DEPENDANTS).criticalPath() == null,
+        "the default sort computed a critical path");
+  }
+
+  private static int layer(DirectedAcyclicGraph<Task> graph, Task task, HashMap<Task, Integer> layers) {
+    Integer known = layers.get(task);
+    if (known != null) {
+      return known;
+    }
+    int layer = 0;
+    for (Task dependency : graph.get(task)) {
+      layer = Math.max(layer, layer(graph, dependency, layers) + 1);
+    }
+    layers.put(task, layer);
+    return layer;
+  }
+}
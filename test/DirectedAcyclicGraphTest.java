@@ -0,0 +1,275 @@
+package taskChainPlanner;
+
+import static taskChainPlanner.TestSupport.check;
+import static taskChainPlanner.TestSupport.tasks;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+
+public class DirectedAcyclicGraphTest {
+  /*
+   Checks the graph against brute force answers on random edits.
+
+   An edge must be accepted exactly when it is new and its target can't
+   already reach its source, and after every edit, the dynamic topological
+   order must put every node before the nodes it has edges to.
+
+   A batch of edges must be inserted exactly when the graph with all of
+   them has no cycle, and the listeners told about its new nodes and edges.
+   A rejected batch must report a cycle made of the graph's and the
+   batch's edges, and leave the graph as it was, without telling the
+   listeners anything.
+
+   Each edge must keep the handle it was inserted with for as long as it
+   exists, whether it is looked up, listed or visited, and a handle must
+   equal any edge between the same nodes in the same direction.
+  */
+  private static final int GRAPHS = 300;
+  private static final int EDITS = 300;
+
+  public static void main(String[] args) {
+    Random random = new Random(4);
+    for (int i = 0; i < GRAPHS; i++) {
+      checkTopologicalOrder(random, 2 + random.nextInt(40));
+      checkBatch(random, 2 + random.nextInt(30));
+      checkEdgeHandles(random, 2 + random.nextInt(20));
+    }
+  }
+
+  private static void checkTopologicalOrder(Random random, int n) {
+    DirectedAcyclicGraph<Task> graph = new DirectedAcyclicGraph<>();
+    List<Task> tasks = tasks(n);
+    for (int k = 0; k < EDITS; k++) {
+      Task from = tasks.get(random.nextInt(n));
+      Task to = tasks.get(random.nextInt(n));
+      int edit = random.nextInt(10);
+      if (edit == 0) {
+        graph.removeNode(from);
+      } else if (edit == 1) {
+        graph.removeEdge(from, to);
+      } else {
+        boolean expected = from != to && !hasEdge(graph, from, to) && !reaches(graph, to, from);
+        boolean inserted = graph.insertEdge(from, to) != null;
+        check(inserted == expected, (expected ? "rejected " : "accepted ") + from.name() + " -> " + to.name());
+      }
+      checkOrder(graph);
+    }
+    checkOrder(graph.clone());
+  }
+
+  private static void checkBatch(Random random, int n) {
+    // a few tasks are only in the batch, so the batch inserts them too
+    List<Task> tasks = tasks(n + 5);
+    DirectedAcyclicGraph<Task> graph = new DirectedAcyclicGraph<>();
+    for (int i = 0; i < n; i++) {
+      graph.insertNode(tasks.get(i));
+    }
+    for (int k = random.nextInt(40); k > 0; k--) {
+      graph.insertEdge(tasks.get(random.nextInt(n)), tasks.get(random.nextInt(n)));
+    }
+    DirectedAcyclicGraph<Task> before = graph.clone();
+
+    ArrayList<DirectedAcyclicGraph.Edge<Task>> batch = new ArrayList<>();
+    HashMap<Task, HashSet<Task>> combined = new HashMap<>();
+    for (Task node : graph.nodes()) {
+      combined.put(node, new HashSet<>(graph.get(node)));
+    }
+    for (int k = random.nextInt(15); k > 0; k--) {
+      Task from = tasks.get(random.nextInt(n + 5));
+      Task to = tasks.get(random.nextInt(n + 5));
+      HashSet<Task> targets = combined.get(from);
+      if (from != to && (targets == null || !targets.contains(to))) {
+        batch.add(new DirectedAcyclicGraph.Edge<>(from, to));
+        combined.computeIfAbsent(from, node -> new HashSet<>()).add(to);
+        combined.computeIfAbsent(to, node -> new HashSet<>());
+      }
+    }
+
+    ArrayList<String> reported = new ArrayList<>();
+    graph.addListener(new DirectedAcyclicGraph.Listener<Task>() {
+      @Override
+      public void nodeInserted(Task node) {
+        reported.add("insert " + node.name());
+      }
+
+      @Override
+      public void nodeRemoved(Task node) {
+        reported.add("remove " + node.name());
+      }
+
+      @Override
+      public void edgeInserted(Task from, Task to) {
+        reported.add("insert " + from.name() + " -> " + to.name());
+      }
+
+      @Override
+      public void edgeRemoved(Task from, Task to) {
+        reported.add("remove " + from.name() + " -> " + to.name());
+      }
+    });
+
+    boolean acyclic = isAcyclic(combined);
+    List<Task> cycle = graph.insertEdges(batch);
+    check(cycle.isEmpty() == acyclic, acyclic ? "rejected an acyclic batch" : "accepted a batch with a cycle");
+    if (acyclic) {
+      check(graph.size() == combined.size(), "batch inserted " + graph.size() + " nodes of " + combined.size());
+      for (Task node : combined.keySet()) {
+        check(new HashSet<>(graph.get(node)).equals(combined.get(node)), "batch edges of " + node.name());
+      }
+      HashSet<String> expected = new HashSet<>();
+      for (Task node : combined.keySet()) {
+        if (before.get(node) == null) {
+          expected.add("insert " + node.name());
+        }
+      }
+      for (DirectedAcyclicGraph.Edge<Task> edge : batch) {
+        expected.add("insert " + edge.from.name() + " -> " + edge.to.name());
+      }
+      check(reported.size() == expected.size() && expected.containsAll(reported),
+          "the listeners were told " + reported + " instead of " + expected);
+    } else {
+      check(reported.isEmpty(), "the listeners were told " + reported + " about a rejected batch");
+      for (int i = 0; i < cycle.size(); i++) {
+        Task from = cycle.get(i);
+        Task to = cycle.get((i + 1) % cycle.size());
+        check(combined.get(from).contains(to), "reported cycle has no edge " + from.name() + " -> " + to.name());
+      }
+      check(graph.size() == before.size() && graph.edgeCount() == before.edgeCount(), "rejected batch wasn't rolled back");
+      for (Task node : before.nodes()) {
+        check(graph.get(node).equals(before.get(node)), "rejected batch changed the edges of " + node.name());
+      }
+    }
+    checkOrder(graph);
+  }
+
+  private static void checkEdgeHandles(Random random, int n) {
+    DirectedAcyclicGraph<Task> graph = new DirectedAcyclicGraph<>();
+    List<Task> tasks = tasks(n);
+    // every edge in the graph, mapped to the handle it was inserted with
+    HashMap<DirectedAcyclicGraph.Edge<Task>, DirectedAcyclicGraph.Edge<Task>> handles = new HashMap<>();
+    for (int k = 0; k < EDITS / 3; k++) {
+      Task from = tasks.get(random.nextInt(n));
+      Task to = tasks.get(random.nextInt(n));
+      int edit = random.nextInt(10);
+      if (edit == 0) {
+        graph.removeNode(from);
+        handles.keySet().removeIf(edge -> edge.from == from || edge.to == from);
+      } else if (edit == 1) {
+        graph.removeEdge(from, to);
+        handles.remove(new DirectedAcyclicGraph.Edge<>(from, to));
+      } else if (edit == 2) {
+        DirectedAcyclicGraph.Edge<Task> edge = new DirectedAcyclicGraph.Edge<>(from, to);
+        if (from != to && !handles.containsKey(edge) && graph.insertEdges(List.of(edge)).isEmpty()) {
+          handles.put(edge, edge);
+        }
+      } else {
+        DirectedAcyclicGraph.Edge<Task> handle = graph.insertEdge(from, to);
+        if (handle != null) {
+          check(handle.from == from && handle.to == to, "insertEdge returned the handle of another edge");
+          check(handles.put(handle, handle) == null, "insertEdge returned a handle for an existing edge");
+        }
+      }
+
+      check(graph.edgeCount() == handles.size() && graph.edges().size() == handles.size(),
+          "the graph has " + graph.edgeCount() + " edges instead of " + handles.size());
+      List<DirectedAcyclicGraph.Edge<Task>> listed = new ArrayList<>();
+      for (DirectedAcyclicGraph.Edge<Task> edge : graph.edges()) {
+        check(handles.get(edge) == edge, "edges listed a new handle for " + edge.from.name() + " -> " + edge.to.name());
+        listed.add(edge);
+      }
+      List<DirectedAcyclicGraph.Edge<Task>> visited = new ArrayList<>();
+      graph.forEachEdge(visited::add);
+      check(listed.size() == handles.size() && visited.equals(listed), "forEachEdge and edges disagree");
+      for (DirectedAcyclicGraph.Edge<Task> handle : handles.values()) {
+        DirectedAcyclicGraph.Edge<Task> equal = new DirectedAcyclicGraph.Edge<>(handle.from, handle.to);
+        check(graph.edge(handle.from, handle.to) == handle, "edge returned a new handle");
+        check(graph.edges().contains(equal) && equal.equals(handle) && equal.hashCode() == handle.hashCode(),
+            "an edge between the same nodes isn't equal to the handle");
+        check(!handle.equals(new DirectedAcyclicGraph.Edge<>(handle.to, handle.from)), "a reversed edge is equal to the handle");
+      }
+      for (Task node : graph.nodes()) {
+        List<DirectedAcyclicGraph.Edge<Task>> edges = graph.edgesFrom(node);
+        check(edges.size() == graph.get(node).size(), "the handles of " + node.name() + " don't match its neighbors");
+        for (int i = 0; i < edges.size(); i++) {
+          check(edges.get(i).from == node && edges.get(i).to == graph.get(node).get(i),
+              "the handles of " + node.name() + " are out of order");
+        }
+      }
+      check(graph.edge(from, to) == handles.get(new DirectedAcyclicGraph.Edge<>(from, to)), "edge found a missing edge");
+    }
+    DirectedAcyclicGraph<Task> clone = graph.clone();
+    for (DirectedAcyclicGraph.Edge<Task> handle : handles.values()) {
+      check(clone.edge(handle.from, handle.to) == handle, "the clone doesn't share the handles");
+    }
+  }
+
+  private static boolean isAcyclic(HashMap<Task, HashSet<Task>> graph) {
+    // Kahn's algorithm, the graph is acyclic if every node is removed
+    HashMap<Task, Integer> dependants = new HashMap<>();
+    for (Task node : graph.keySet()) {
+      dependants.putIfAbsent(node, 0);
+      for (Task neighbor : graph.get(node)) {
+        dependants.merge(neighbor, 1, Integer::sum);
+      }
+    }
+    ArrayDeque<Task> free = new ArrayDeque<>();
+    for (Task node : graph.keySet()) {
+      if (dependants.get(node) == 0) {
+        free.add(node);
+      }
+    }
+    int removed = 0;
+    while (!free.isEmpty()) {
+      Task node = free.poll();
+      removed++;
+      for (Task neighbor : graph.get(node)) {
+        if (dependants.merge(neighbor, -1, Integer::sum) == 0) {
+          free.add(neighbor);
+        }
+      }
+    }
+    return removed == graph.size();
+  }
+
+  /**
+   * Check that the positions are distinct and every edge goes from a lower position to a higher one.
+   *
+   * @param graph the graph to check
+   */
+  private static void checkOrder(DirectedAcyclicGraph<Task> graph) {
+    HashSet<Integer> positions = new HashSet<>();
+    for (Task node : graph.nodes()) {
+      check(positions.add(graph.position(node)), "repeated position " + graph.position(node));
+      for (Task neighbor : graph.get(node)) {
+        check(graph.position(node) < graph.position(neighbor),
+            node.name() + " -> " + neighbor.name() + " is against the topological order");
+      }
+    }
+  }
+
+  private static boolean hasEdge(DirectedAcyclicGraph<Task> graph, Task from, Task to) {
+    return graph.get(from) != null && graph.get(from).contains(to);
+  }
+
+  private static boolean reaches(DirectedAcyclicGraph<Task> graph, Task from, Task to) {
+    ArrayDeque<Task> stack = new ArrayDeque<>();
+    HashSet<Task> seen = new HashSet<>();
+    stack.push(from);
+    while (!stack.isEmpty()) {
+      Task node = stack.pop();
+      if (node == to) {
+        return true;
+      }
+      if (seen.add(node) && graph.get(node) != null) {
+        for (Task neighbor : graph.get(node)) {
+          stack.push(neighbor);
+        }
+      }
+    }
+    return false;
+  }
+}
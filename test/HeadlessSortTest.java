@@ -0,0 +1,92 @@
+package taskChainPlanner;
+
+import static taskChainPlanner.TestSupport.check;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Set;
+
+public class HeadlessSortTest {
+  /*
+   Checks the text plan format of the headless sort: which lines declare
+   tasks and dependencies, that a repeated dependency is kept once, that
+   each kind of bad input is reported with its line, and that a plan and
+   its project file sort to the same output.
+  */
+  public static void main(String[] args) throws IOException {
+    Path directory = Files.createTempDirectory("headless-sort-test");
+    Path plan = directory.resolve("plan.txt");
+    Path project = directory.resolve("plan" + ProjectFile.EXTENSION);
+    try {
+      checkPlan(plan, project);
+      checkError(plan, "a\tb\nb\ta\tc\n", ":2: expected a task");
+      checkError(plan, "a\n\t b\n", ":2: expected a task");
+      checkError(plan, "# loop\n a \t a \n", ":2: 'a' can't depend on itself");
+      checkError(plan, "a\tb\nb\tc\nc\ta\n", ": the dependencies contain a cycle");
+    } finally {
+      Files.deleteIfExists(plan);
+      Files.deleteIfExists(project);
+      Files.deleteIfExists(directory);
+    }
+  }
+
+  private static void checkPlan(Path plan, Path project) throws IOException {
+    write(plan, "# deploy depends on build and test, test depends on build\n"
+        + "deploy\tbuild\n"
+        + "  deploy \t test\n"
+        + "\n"
+        + "test\tbuild\n"
+        + "deploy\tbuild\n"
+        + "docs\n"
+        + "test\n");
+    DirectedAcyclicGraph<Task> graph = HeadlessSort.read(plan.toString());
+    HashMap<String, Task> byName = new HashMap<>();
+    for (Task task : graph.nodes()) {
+      byName.put(task.name(), task);
+    }
+    check(byName.keySet().equals(Set.of("deploy", "build", "test", "docs")), "read the tasks " + byName.keySet());
+    check(graph.edgeCount() == 3, "read " + graph.edgeCount() + " dependencies instead of 3");
+    check(graph.get(byName.get("deploy")).contains(byName.get("build"))
+        && graph.get(byName.get("deploy")).contains(byName.get("test"))
+        && graph.get(byName.get("test")).contains(byName.get("build")), "lost a dependency");
+
+    String sorted = sort(graph);
+    check(sorted.equals("0\t-1\tReady\tbuild\n1\t-1\tReady\tdocs\n2\t0\tNot Ready\ttest\n3\t2\tNot Ready\tdeploy\n"),
+        "sorted the plan as\n" + sorted);
+
+    ProjectFile.save(graph, project);
+    check(sort(HeadlessSort.read(project.toString())).equals(sorted), "the project file sorted differently");
+  }
+
+  /**
+   * Check that reading a plan fails with an error about the plan.
+   *
+   * @param plan the file to write the plan to
+   * @param text the text of the plan
+   * @param expected the start of the error, after the file name
+   * @throws IOException if the plan can't be written
+   */
+  private static void checkError(Path plan, String text, String expected) throws IOException {
+    write(plan, text);
+    try {
+      HeadlessSort.read(plan.toString());
+      throw new AssertionError("read a plan that should fail with " + expected);
+    } catch (IOException e) {
+      check(e.getMessage().startsWith(plan + expected), "reported '" + e.getMessage() + "' instead of '" + expected + "'");
+    }
+  }
+
+  private static String sort(DirectedAcyclicGraph<Task> graph) throws IOException {
+    StringWriter out = new StringWriter();
+    HeadlessSort.write(TaskSorter.sort(graph.freeze(), false, TaskSorter.SortMode.DEPENDANTS), out);
+    return out.toString();
+  }
+
+  private static void write(Path path, String text) throws IOException {
+    Files.write(path, text.getBytes(StandardCharsets.UTF_8));
+  }
+}
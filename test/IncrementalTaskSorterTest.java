@@ -0,0 +1,119 @@
+package taskChainPlanner;
+
+import static taskChainPlanner.TestSupport.check;
+import static taskChainPlanner.TestSupport.randomGraph;
+import static taskChainPlanner.TestSupport.tasks;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Random;
+
+public class IncrementalTaskSorterTest {
+  /*
+   Checks the incremental sorter after random edits against the rules of
+   the sort, computed from scratch on the edited graph:
+   - the first result is the same as Task.sortTasks
+   - ids are given out layer by layer, a task's layer being one past the
+     deepest layer of its dependencies
+   - within a layer, tasks with more dependants come first
+   - a task's priority is the largest id of its dependencies, or -1
+   - the result is in (priority, id) order, with each task once
+   - a task that isn't Assigned or Complete is Ready exactly when its
+     dependencies are all Complete, with tasks completed through a
+     TaskProgress, as the task list does
+
+   Ties within a layer may differ from a fresh sort after edits, so the
+   order of tasks with equal dependants counts isn't checked.
+  */
+  private static final int GRAPHS = 300;
+  private static final int ROUNDS = 60;
+
+  public static void main(String[] args) {
+    Random random = new Random(10);
+    for (int i = 0; i < GRAPHS; i++) {
+      DirectedAcyclicGraph<Task> graph = randomGraph(random, 1 + random.nextInt(40), random.nextInt(80));
+      List<Task> sortedOnce = Task.sortTasks(graph).asList();
+      IncrementalTaskSorter sorter = new IncrementalTaskSorter(graph);
+      TaskProgress progress = new TaskProgress(graph);
+      check(sorter.sortTasks().asList().equals(sortedOnce), "the first result differs from Task.sortTasks");
+
+      List<Task> pool = new ArrayList<>(graph.nodes());
+      pool.addAll(tasks(5));
+      for (int round = 0; round < ROUNDS; round++) {
+        for (int edits = 1 + random.nextInt(3); edits > 0; edits--) {
+          Task from = pool.get(random.nextInt(pool.size()));
+          Task to = pool.get(random.nextInt(pool.size()));
+          int edit = random.nextInt(12);
+          if (edit == 0) {
+            graph.removeNode(from);
+          } else if (edit <= 3) {
+            graph.removeEdge(from, to);
+          } else if (edit == 4) {
+            graph.insertNode(from);
+          } else if (edit == 5 && graph.nodes().contains(from)) {
+            progress.setComplete(from);
+          } else {
+            graph.insertEdge(from, to);
+          }
+        }
+        checkSort(graph, sorter.sortTasks());
+      }
+      sorter.detach();
+      progress.detach();
+    }
+  }
+
+  private static void checkSort(DirectedAcyclicGraph<Task> graph, SortedTasks sorted) {
+    int n = graph.size();
+    check(sorted.size() == n, "sorted " + sorted.size() + " of " + n + " tasks");
+
+    // Layers by longest path from the tasks with no dependencies, in topological order
+    HashMap<Task, Integer> layers = new HashMap<>();
+    List<Task> byPosition = new ArrayList<>(graph.nodes());
+    byPosition.sort((a, b) -> Integer.compare(graph.position(b), graph.position(a)));
+    for (Task task : byPosition) {
+      int layer = 0;
+      for (Task dependency : graph.get(task)) {
+        layer = Math.max(layer, layers.get(dependency) + 1);
+      }
+      layers.put(task, layer);
+    }
+
+    Task[] byId = new Task[n];
+    for (Task task : sorted) {
+      check(graph.nodes().contains(task), task + " isn't in the graph");
+      check(task.id() >= 0 && task.id() < n && byId[task.id()] == null, task + " has a bad or repeated id");
+      byId[task.id()] = task;
+    }
+    for (int id = 1; id < n; id++) {
+      Task previous = byId[id - 1];
+      Task task = byId[id];
+      check(layers.get(previous) <= layers.get(task), task + " is numbered before a task of an earlier layer");
+      if (layers.get(previous).equals(layers.get(task))) {
+        check(graph.dependants(previous).size() >= graph.dependants(task).size(),
+            task + " has more dependants than " + previous + " but a larger id");
+      }
+    }
+
+    Task previous = null;
+    for (Task task : sorted) {
+      int maxPriority = -1;
+      boolean dependenciesComplete = true;
+      for (Task dependency : graph.get(task)) {
+        maxPriority = Math.max(maxPriority, dependency.id());
+        dependenciesComplete &= dependency.isComplete();
+      }
+      check(task.priority() == maxPriority, task + " expected priority " + maxPriority);
+      if (!task.isAssigned() && !task.isComplete()) {
+        check(task.isReady() == dependenciesComplete, task + " has the wrong readiness");
+      }
+      if (previous != null) {
+        check(previous.priority() < task.priority()
+            || (previous.priority() == task.priority() && previous.id() < task.id()),
+            previous + " is sorted before " + task);
+      }
+      previous = task;
+    }
+  }
+}
@@ -0,0 +1,123 @@
+package taskChainPlanner;
+
+import static taskChainPlanner.TestSupport.check;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+public class PriorityQueueTest {
+  /*
+   Checks the heap against a list of entries on random operations, where
+   the list plays the old linked list queue: poll takes the smallest entry
+   and the earliest offered among ties, remove takes the earliest offered
+   equal entry, and offer always adds an entry, even for a queued element.
+
+   Integers up to 1000 are used so that most values are boxed separately,
+   and equal values have to be matched with equals rather than identity.
+   Keys are elements whose priority changes while they are queued, some
+   of them queued more than once, which update has to restore.
+  */
+  private static final int ROUNDS = 200;
+  private static final int OPERATIONS = 500;
+
+  public static void main(String[] args) {
+    Random random = new Random(2);
+    for (int i = 0; i < ROUNDS; i++) {
+      checkValues(random);
+      checkUpdates(random);
+    }
+  }
+
+  private static void checkValues(Random random) {
+    PriorityQueue<Integer> queue = new PriorityQueue<>(Integer::compare, 1 + random.nextInt(4));
+    List<Integer> expected = new ArrayList<>();
+    for (int k = 0; k < OPERATIONS; k++) {
+      // a new box for each operation, equal to earlier ones but not the same object
+      Integer value = Integer.valueOf(200 + random.nextInt(20) * 40);
+      int operation = random.nextInt(5);
+      if (operation < 2) {
+        queue.offer(value);
+        expected.add(value);
+      } else if (operation == 2) {
+        // compared by identity, so ties must come out in offer order
+        check(queue.poll() == take(expected, first(expected, Integer::compare)), "polled out of order");
+      } else if (operation == 3) {
+        int equal = expected.indexOf(value);
+        check(queue.remove(value) == (equal >= 0), "remove(" + value + ") disagrees with the list");
+        take(expected, equal);
+      } else {
+        check(queue.contains(value) == expected.contains(value), "contains(" + value + ") disagrees with the list");
+      }
+      check(queue.size() == expected.size(), "size " + queue.size() + " instead of " + expected.size());
+      int first = first(expected, Integer::compare);
+      check(queue.peek() == (first < 0 ? null : expected.get(first)), "peeked the wrong entry");
+    }
+  }
+
+  private static void checkUpdates(Random random) {
+    Comparator<Key> byPriority = (a, b) -> Integer.compare(a.priority, b.priority);
+    PriorityQueue<Key> queue = new PriorityQueue<>(byPriority);
+    List<Key> expected = new ArrayList<>();
+    Key[] keys = new Key[12];
+    for (int i = 0; i < keys.length; i++) {
+      keys[i] = new Key(random.nextInt(10));
+    }
+    for (int k = 0; k < OPERATIONS; k++) {
+      Key key = keys[random.nextInt(keys.length)];
+      int operation = random.nextInt(4);
+      if (operation == 0) {
+        queue.offer(key);
+        expected.add(key);
+      } else if (operation == 1) {
+        check(queue.poll() == take(expected, first(expected, byPriority)), "polled out of order after updates");
+      } else if (operation == 2) {
+        int equal = expected.indexOf(key);
+        check(queue.remove(key) == (equal >= 0), "remove disagrees with the list after updates");
+        take(expected, equal);
+      } else {
+        key.priority = random.nextInt(10);
+        check(queue.update(key) == expected.contains(key), "update disagrees with the list");
+      }
+      check(queue.size() == expected.size(), "size " + queue.size() + " instead of " + expected.size());
+    }
+    // every key's priority was restored by update, so draining gives the list order
+    while (!expected.isEmpty()) {
+      check(queue.poll() == take(expected, first(expected, byPriority)), "drained out of order after updates");
+    }
+    check(queue.isEmpty() && queue.poll() == null, "entries left after draining");
+  }
+
+  /**
+   * Find the entry the old queue would poll, the earliest offered of the smallest.
+   *
+   * @param entries the queued entries, in the order they were offered
+   * @param comparator the queue's ordering
+   * @return the index of the entry, or -1 if there are none
+   */
+  private static <T> int first(List<T> entries, Comparator<T> comparator) {
+    int first = -1;
+    for (int i = 0; i < entries.size(); i++) {
+      if (first < 0 || comparator.compare(entries.get(i), entries.get(first)) < 0) {
+        first = i;
+      }
+    }
+    return first;
+  }
+
+  private static <T> T take(List<T> entries, int index) {
+    return index < 0 ? null : entries.remove(index);
+  }
+
+  /**
+   * An element whose priority can change while it is queued.
+   */
+  private static final class Key {
+    int priority;
+
+    Key(int priority) {
+      this.priority = priority;
+    }
+  }
+}
@@ -0,0 +1,83 @@
+package taskChainPlanner;
+
+import static taskChainPlanner.TestSupport.check;
+import static taskChainPlanner.TestSupport.randomGraph;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Random;
+
+public class ProjectFileTest {
+  /*
+   Checks that saving and loading a project file gives back the same graph,
+   with every task's name, position, duration, state, id and priority, and
+   that a file cut short is rejected rather than loaded. A loaded project
+   must also be savable over the file it was loaded from.
+  */
+  private static final int GRAPHS = 100;
+
+  public static void main(String[] args) throws IOException {
+    Random random = new Random(9);
+    Path directory = Files.createTempDirectory("project-file-test");
+    Path path = directory.resolve("plan" + ProjectFile.EXTENSION);
+    try {
+      for (int i = 0; i < GRAPHS; i++) {
+        DirectedAcyclicGraph<Task> graph = randomGraph(random, 1 + random.nextInt(60), random.nextInt(150));
+        Task.sortTasks(graph);
+        for (Task task : graph.nodes()) {
+          task.setPos(random.nextDouble() * 1000, random.nextDouble() * 1000);
+          task.setDuration(random.nextInt(10) / 2.0);
+          if (random.nextInt(4) == 0) {
+            task.setName(task.name() + " héllo ✓");
+          }
+          if (random.nextInt(5) == 0) {
+            task.setComplete();
+          }
+        }
+        ProjectFile.save(graph, path);
+        DirectedAcyclicGraph<Task> loaded = ProjectFile.load(path);
+        checkSame(graph, loaded);
+        // saving over the file that was just opened, as Open then Save does
+        ProjectFile.save(loaded, path);
+        checkSame(graph, ProjectFile.load(path));
+      }
+      check(!Files.exists(path.resolveSibling(path.getFileName() + ".tmp")), "the temporary file was left behind");
+
+      byte[] bytes = Files.readAllBytes(path);
+      Files.write(path, Arrays.copyOf(bytes, bytes.length - 4));
+      try {
+        ProjectFile.load(path);
+        throw new AssertionError("a truncated file was loaded");
+      } catch (IOException expected) {
+        // rejected as it should be
+      }
+    } finally {
+      Files.deleteIfExists(path);
+      Files.deleteIfExists(directory);
+    }
+  }
+
+  private static void checkSame(DirectedAcyclicGraph<Task> saved, DirectedAcyclicGraph<Task> loaded) {
+    check(loaded.size() == saved.size(), "loaded " + loaded.size() + " of " + saved.size() + " tasks");
+    check(loaded.edgeCount() == saved.edgeCount(), "loaded " + loaded.edgeCount() + " of " + saved.edgeCount() + " edges");
+    HashMap<String, Task> byName = new HashMap<>();
+    for (Task task : loaded.nodes()) {
+      byName.put(task.name(), task);
+    }
+    for (Task task : saved.nodes()) {
+      Task copy = byName.get(task.name());
+      check(copy != null, "lost " + task.name());
+      check(copy.x() == task.x() && copy.y() == task.y(), "moved " + task.name());
+      check(copy.duration() == task.duration(), "changed the duration of " + task.name());
+      check(copy.bitflags() == task.bitflags(), "changed the state of " + task.name());
+      check(copy.id() == task.id() && copy.priority() == task.priority(), "renumbered " + task.name());
+      check(loaded.get(copy).size() == saved.get(task).size(), "changed the dependencies of " + task.name());
+      for (Task dependency : saved.get(task)) {
+        check(loaded.get(copy).contains(byName.get(dependency.name())), "lost " + task.name() + " -> " + dependency.name());
+      }
+    }
+  }
+}
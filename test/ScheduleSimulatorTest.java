@@ -0,0 +1,124 @@
+package taskChainPlanner;
+
+import static taskChainPlanner.TestSupport.check;
+import static taskChainPlanner.TestSupport.randomGraph;
+import static taskChainPlanner.TestSupport.tasks;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+public class ScheduleSimulatorTest {
+  /*
+   Checks the schedule simulator against a naive list scheduler, which
+   rescans the sorted tasks for ready ones at every point in time a task
+   finishes, on random graphs with random durations, some of them zero.
+
+   Every start time and worker must match, the makespan is never shorter
+   than the critical path, and with a worker per task it is exactly as long.
+  */
+  private static final int GRAPHS = 200;
+  private static final int MOST_WORKERS = 6;
+
+  public static void main(String[] args) {
+    Random random = new Random(2);
+    for (int i = 0; i < GRAPHS; i++) {
+      DirectedAcyclicGraph<Task> graph = randomGraph(random, 1 + random.nextInt(60), random.nextInt(120));
+      for (Task task : graph.nodes()) {
+        task.setDuration(random.nextInt(5) == 0 ? 0 : 1 + random.nextInt(4));
+      }
+      SortedTasks order = random.nextBoolean()
+          ? Task.sortTasks(graph) : Task.sortTasks(graph, TaskSorter.SortMode.CRITICAL_PATH);
+      ScheduleSimulator simulator = new ScheduleSimulator(graph, order);
+      for (int workers = 1; workers <= MOST_WORKERS; workers++) {
+        checkSchedule(graph, order, simulator.simulate(workers), workers);
+      }
+      double criticalPath = CriticalPath.of(graph).length();
+      check(simulator.simulate(graph.size()).makespan() == criticalPath,
+          "with a worker per task, the makespan isn't the critical path length " + criticalPath);
+    }
+    checkExample();
+  }
+
+  private static void checkSchedule(DirectedAcyclicGraph<Task> graph, SortedTasks order,
+      ScheduleSimulator.Schedule schedule, int workers) {
+    HashMap<Task, Double> starts = new HashMap<>();
+    HashMap<Task, Integer> workerOf = new HashMap<>();
+    double makespan = referenceSchedule(graph, order.asList(), workers, starts, workerOf);
+    check(schedule.makespan() == makespan, "makespan " + schedule.makespan() + " expected " + makespan);
+    for (int rank = 0; rank < order.size(); rank++) {
+      Task task = schedule.task(rank);
+      check(schedule.start(rank) == starts.get(task), task + " starts at " + schedule.start(rank)
+          + " expected " + starts.get(task));
+      check(schedule.worker(rank) == workerOf.get(task), task + " is on worker " + schedule.worker(rank)
+          + " expected " + workerOf.get(task));
+    }
+    check(schedule.peakParallelism() <= workers, "more tasks ran at once than there are workers");
+  }
+
+  /**
+   * Schedule the tasks by rescanning them in order for ready ones whenever a task finishes,
+   * starting each on the free worker with the lowest number.
+   *
+   * @return the makespan
+   */
+  private static double referenceSchedule(DirectedAcyclicGraph<Task> graph, List<Task> order, int workers,
+      Map<Task, Double> starts, Map<Task, Integer> workerOf) {
+    HashSet<Task> finished = new HashSet<>();
+    boolean[] busy = new boolean[workers];
+    TreeMap<Double, List<Task>> finishing = new TreeMap<>();
+    double now = 0;
+    while (finished.size() < order.size()) {
+      for (Task task : order) {
+        if (starts.containsKey(task) || !finished.containsAll(graph.get(task))) {
+          continue;
+        }
+        int worker = 0;
+        while (worker < workers && busy[worker]) {
+          worker++;
+        }
+        if (worker == workers) {
+          break;
+        }
+        busy[worker] = true;
+        starts.put(task, now);
+        workerOf.put(task, worker);
+        finishing.computeIfAbsent(now + task.duration(), time -> new ArrayList<>()).add(task);
+      }
+      Map.Entry<Double, List<Task>> next = finishing.pollFirstEntry();
+      now = next.getKey();
+      for (Task task : next.getValue()) {
+        finished.add(task);
+        busy[workerOf.get(task)] = false;
+      }
+    }
+    return now;
+  }
+
+  /**
+   * The example from the simulator's documentation.
+   */
+  private static void checkExample() {
+    List<Task> tasks = tasks(4);
+    Task a = tasks.get(0);
+    Task b = tasks.get(1);
+    Task c = tasks.get(2);
+    Task d = tasks.get(3);
+    a.setDuration(1);
+    b.setDuration(3);
+    c.setDuration(2);
+    d.setDuration(4);
+    DirectedAcyclicGraph<Task> graph = new DirectedAcyclicGraph<>();
+    graph.insertEdge(a, b);
+    graph.insertEdge(a, c);
+    graph.insertEdge(b, c);
+    graph.insertNode(d);
+    ScheduleSimulator.Schedule schedule = new ScheduleSimulator(graph).simulate(2);
+    check(schedule.makespan() == 6, "the example's makespan is " + schedule.makespan());
+    check(schedule.idleTime(1) == 2, "worker 1 of the example is idle for " + schedule.idleTime(1));
+  }
+}
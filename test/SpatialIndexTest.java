@@ -0,0 +1,116 @@
+package taskChainPlanner;
+
+import static taskChainPlanner.TestSupport.check;
+import static taskChainPlanner.TestSupport.tasks;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+
+public class SpatialIndexTest {
+  /*
+   Checks the grid index against a scan of every task, while tasks are
+   inserted, removed and moved around a plane that crosses zero, so cells
+   with negative columns and rows are used too.
+
+   nearest must find a task at the smallest distance within the radius,
+   and query the tasks in the rectangle, both for small rectangles, which
+   are answered cell by cell, and ones larger than the tasks' spread,
+   which are answered from the cells in use.
+  */
+  private static final int ROUNDS = 100;
+  private static final int EDITS = 200;
+  private static final double SPREAD = 1000;
+
+  public static void main(String[] args) {
+    Random random = new Random(14);
+    for (int i = 0; i < ROUNDS; i++) {
+      checkIndex(random, 10 + random.nextInt(40) * 5.0);
+    }
+  }
+
+  private static void checkIndex(Random random, double cellSize) {
+    DirectedAcyclicGraph<Task> graph = new DirectedAcyclicGraph<>();
+    List<Task> tasks = tasks(60);
+    for (Task task : tasks.subList(0, 30)) {
+      move(random, task);
+      graph.insertNode(task);
+    }
+    SpatialIndex index = new SpatialIndex(graph, cellSize);
+    for (int k = 0; k < EDITS; k++) {
+      Task task = tasks.get(random.nextInt(tasks.size()));
+      int edit = random.nextInt(4);
+      if (edit == 0) {
+        move(random, task);
+        graph.insertNode(task);
+      } else if (edit == 1) {
+        graph.removeNode(task);
+      } else {
+        move(random, task);
+      }
+      check(index.size() == graph.size(), "indexed " + index.size() + " of " + graph.size() + " tasks");
+
+      double x = point(random);
+      double y = point(random);
+      double radius = random.nextDouble() * 3 * cellSize;
+      checkNearest(graph, index.nearest(x, y, radius), x, y, radius);
+
+      double width = random.nextInt(3) == 0 ? 3 * SPREAD : random.nextDouble() * 2 * cellSize;
+      double height = random.nextInt(3) == 0 ? 3 * SPREAD : random.nextDouble() * 2 * cellSize;
+      checkQuery(graph, index.query(x - width / 2, y - height / 2, x + width / 2, y + height / 2),
+          x - width / 2, y - height / 2, x + width / 2, y + height / 2);
+    }
+    check(index.query(1, 1, 0, 0).isEmpty(), "an empty rectangle had tasks in it");
+
+    index.detach();
+    check(index.size() == 0, "a detached index still has tasks");
+    Task task = tasks.get(0);
+    graph.insertNode(task);
+    move(random, task);
+    check(index.size() == 0 && index.nearest(task.x(), task.y(), cellSize) == null, "a detached index followed the graph");
+  }
+
+  private static void checkNearest(DirectedAcyclicGraph<Task> graph, Task found, double x, double y, double radius) {
+    double closest = Double.POSITIVE_INFINITY;
+    for (Task task : graph.nodes()) {
+      closest = Math.min(closest, Math.hypot(task.x() - x, task.y() - y));
+    }
+    if (closest > radius) {
+      check(found == null, "found a task further than the radius");
+    } else {
+      check(found != null && graph.nodes().contains(found), "missed a task within the radius");
+      check(Math.hypot(found.x() - x, found.y() - y) == closest, "found a task that isn't the closest");
+    }
+  }
+
+  private static void checkQuery(DirectedAcyclicGraph<Task> graph, List<Task> found,
+      double minX, double minY, double maxX, double maxY) {
+    HashSet<Task> expected = new HashSet<>();
+    for (Task task : graph.nodes()) {
+      if (task.x() >= minX && task.x() <= maxX && task.y() >= minY && task.y() <= maxY) {
+        expected.add(task);
+      }
+    }
+    check(found.size() == expected.size() && expected.equals(new HashSet<>(found)),
+        "found " + names(found) + " in the rectangle instead of " + names(expected));
+  }
+
+  private static void move(Random random, Task task) {
+    task.setPos(point(random), point(random));
+  }
+
+  private static double point(Random random) {
+    // whole numbers now and then, so tasks sit exactly on cell borders
+    double point = (random.nextDouble() - 0.5) * SPREAD;
+    return random.nextInt(4) == 0 ? Math.rint(point / 10) * 10 : point;
+  }
+
+  private static List<String> names(Iterable<Task> tasks) {
+    List<String> names = new ArrayList<>();
+    for (Task task : tasks) {
+      names.add(task.name());
+    }
+    return names;
+  }
+}
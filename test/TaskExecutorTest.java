@@ -0,0 +1,133 @@
+package taskChainPlanner;
+
+import static taskChainPlanner.TestSupport.check;
+import static taskChainPlanner.TestSupport.randomGraph;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class TaskExecutorTest {
+  /*
+   Checks the task executor on random graphs:
+   - creating an executor doesn't change the tasks' ids or priorities
+   - with one action at a time on the calling thread, the tasks run in
+     the order of Task.sortTasks
+   - on a thread pool, every task runs once, after all its dependencies,
+     and never more actions run at once than the parallelism
+   - Complete tasks aren't run again, and their pending dependencies
+     aren't counted down
+   - the future's callbacks don't run while the executor is locked, even
+     when the actions run on the calling thread
+   - a failing action fails the run with the failed task, and leaves it Ready
+  */
+  private static final int GRAPHS = 200;
+
+  public static void main(String[] args) throws Exception {
+    Random random = new Random(3);
+    ExecutorService pool = Executors.newFixedThreadPool(4);
+    try {
+      for (int i = 0; i < GRAPHS; i++) {
+        DirectedAcyclicGraph<Task> graph = randomGraph(random, 1 + random.nextInt(60), random.nextInt(150));
+        checkOrder(graph);
+        checkParallel(graph, pool, 1 + random.nextInt(4));
+        checkCompleteSkipped(graph, random);
+        checkFailure(graph, random);
+      }
+    } finally {
+      pool.shutdown();
+      pool.awaitTermination(10, TimeUnit.SECONDS);
+    }
+  }
+
+  private static void checkOrder(DirectedAcyclicGraph<Task> graph) throws Exception {
+    for (Task task : graph.nodes()) {
+      task.clearBitflags();
+      task.setId(-1);
+      task.setPriority(-2);
+    }
+    TaskExecutor executor = new TaskExecutor(graph, null, Runnable::run, 1);
+    new TaskExecutor(graph, Runnable::run);
+    for (Task task : graph.nodes()) {
+      check(task.id() == -1 && task.priority() == -2, "creating an executor renumbered " + task);
+    }
+    List<Task> ran = new ArrayList<>();
+    executor.start(ran::add).get();
+    check(ran.equals(Task.sortTasks(graph).asList()), "the tasks didn't run in sorted order");
+  }
+
+  private static void checkParallel(DirectedAcyclicGraph<Task> graph, ExecutorService pool, int parallelism) throws Exception {
+    for (Task task : graph.nodes()) {
+      task.clearBitflags();
+    }
+    List<Task> ran = Collections.synchronizedList(new ArrayList<>());
+    AtomicInteger running = new AtomicInteger();
+    AtomicInteger mostRunning = new AtomicInteger();
+    new TaskExecutor(graph, Task.sortTasks(graph), pool, parallelism).start(task -> {
+      mostRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+      for (Task dependency : graph.get(task)) {
+        check(dependency.isComplete(), task + " started before " + dependency);
+      }
+      ran.add(task);
+      running.decrementAndGet();
+    }).get(30, TimeUnit.SECONDS);
+    check(ran.size() == graph.size() && new HashSet<>(ran).size() == graph.size(), "not every task ran once");
+    check(mostRunning.get() <= parallelism, mostRunning.get() + " actions ran at once, over " + parallelism);
+    for (Task task : graph.nodes()) {
+      check(task.isComplete(), task + " isn't Complete");
+    }
+  }
+
+  private static void checkCompleteSkipped(DirectedAcyclicGraph<Task> graph, Random random) throws Exception {
+    HashSet<Task> complete = new HashSet<>();
+    for (Task task : graph.nodes()) {
+      task.clearBitflags();
+      task.setPendingDependencies(0);
+      if (random.nextInt(3) == 0) {
+        task.setComplete();
+        complete.add(task);
+      }
+    }
+    List<Task> ran = new ArrayList<>();
+    TaskExecutor executor = new TaskExecutor(graph, Runnable::run);
+    AtomicBoolean lockedOnCompletion = new AtomicBoolean();
+    executor.future().whenComplete((result, failure) -> lockedOnCompletion.set(Thread.holdsLock(executor)));
+    executor.start(ran::add).get();
+    check(!lockedOnCompletion.get(), "the future was completed while the executor was locked");
+    for (Task task : ran) {
+      check(!complete.contains(task), task + " was Complete but ran again");
+    }
+    for (Task task : complete) {
+      check(task.pendingDependencies() == 0, task + " was Complete but its pending dependencies were counted down");
+    }
+    check(ran.size() + complete.size() == graph.size(), "not every unfinished task ran");
+  }
+
+  private static void checkFailure(DirectedAcyclicGraph<Task> graph, Random random) throws Exception {
+    List<Task> tasks = new ArrayList<>(graph.nodes());
+    Task failing = tasks.get(random.nextInt(tasks.size()));
+    for (Task task : tasks) {
+      task.clearBitflags();
+    }
+    try {
+      new TaskExecutor(graph, Runnable::run).start(task -> {
+        if (task == failing) {
+          throw new IllegalStateException("failed on purpose");
+        }
+      }).get();
+      throw new AssertionError("the run didn't fail");
+    } catch (ExecutionException e) {
+      check(e.getCause() instanceof TaskExecutor.TaskFailedException, "the run failed with " + e.getCause());
+      check(((TaskExecutor.TaskFailedException) e.getCause()).task() == failing, "the wrong task failed");
+      check(failing.isReady(), "the failed task isn't Ready");
+    }
+  }
+}
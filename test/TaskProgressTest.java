@@ -0,0 +1,106 @@
+package taskChainPlanner;
+
+import static taskChainPlanner.TestSupport.check;
+import static taskChainPlanner.TestSupport.tasks;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+
+public class TaskProgressTest {
+  /*
+   Checks that the progress keeps every task's pending dependencies and
+   state right while tasks are completed, assigned and reopened, and while
+   the graph is edited, by recounting them from scratch after each change.
+
+   Every task whose state changed must be reported to the state listener,
+   and once the progress is detached, graph edits must no longer change
+   the counts.
+  */
+  private static final int GRAPHS = 300;
+  private static final int CHANGES = 200;
+
+  public static void main(String[] args) {
+    Random random = new Random(21);
+    for (int i = 0; i < GRAPHS; i++) {
+      checkProgress(random, 2 + random.nextInt(30));
+    }
+  }
+
+  private static void checkProgress(Random random, int n) {
+    DirectedAcyclicGraph<Task> graph = new DirectedAcyclicGraph<>();
+    List<Task> tasks = tasks(n);
+    for (Task task : tasks) {
+      graph.insertNode(task);
+      if (random.nextInt(4) == 0) {
+        task.setComplete();
+      }
+    }
+    for (int k = random.nextInt(3 * n); k > 0; k--) {
+      graph.insertEdge(tasks.get(random.nextInt(n)), tasks.get(random.nextInt(n)));
+    }
+    TaskProgress progress = new TaskProgress(graph);
+    HashSet<Task> reported = new HashSet<>();
+    progress.setOnStateChanged(reported::add);
+    checkCounts(graph);
+
+    for (int k = 0; k < CHANGES; k++) {
+      Task task = tasks.get(random.nextInt(n));
+      Task other = tasks.get(random.nextInt(n));
+      HashMap<Task, String> states = new HashMap<>();
+      for (Task node : graph.nodes()) {
+        states.put(node, node.taskState());
+      }
+      reported.clear();
+
+      int change = random.nextInt(8);
+      if (change == 0) {
+        graph.removeNode(task);
+      } else if (change == 1) {
+        graph.insertNode(task);
+      } else if (change == 2) {
+        graph.insertEdge(task, other);
+      } else if (change == 3) {
+        graph.removeEdge(task, other);
+      } else if (graph.get(task) == null) {
+        continue;
+      } else if (change < 6) {
+        progress.setComplete(task);
+      } else if (change == 6) {
+        progress.setAssigned(task);
+      } else {
+        progress.setReady(task);
+      }
+
+      checkCounts(graph);
+      for (Task node : graph.nodes()) {
+        String before = states.get(node);
+        check(before == null || before.equals(node.taskState()) || reported.contains(node),
+            node.name() + " went from " + before + " to " + node.taskState() + " without being reported");
+      }
+    }
+
+    progress.detach();
+    List<Task> added = tasks(2);
+    graph.insertNode(added.get(0));
+    graph.insertNode(added.get(1));
+    graph.insertEdge(added.get(0), added.get(1));
+    check(added.get(0).pendingDependencies() == 0, "a detached progress counted a new dependency");
+  }
+
+  private static void checkCounts(DirectedAcyclicGraph<Task> graph) {
+    for (Task task : graph.nodes()) {
+      int pending = 0;
+      for (Task dependency : graph.get(task)) {
+        if (!dependency.isComplete()) {
+          pending++;
+        }
+      }
+      check(task.pendingDependencies() == pending,
+          task.name() + " waits on " + task.pendingDependencies() + " dependencies instead of " + pending);
+      check(task.isReady() == (pending == 0 && !task.isAssigned() && !task.isComplete()),
+          task.name() + " is " + task.taskState() + " with " + pending + " pending dependencies");
+    }
+  }
+}
@@ -0,0 +1,135 @@
+package taskChainPlanner;
+
+import static taskChainPlanner.TestSupport.check;
+import static taskChainPlanner.TestSupport.randomGraph;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Random;
+
+public class TaskSorterTest {
+  /*
+   Checks the layered task sort against the original sort it replaced,
+   which cloned the graph and rescanned every task on each iteration.
+
+   The reference below is that sort, except that each iteration's set is
+   gathered in the graph's node iteration order, as the layered sort does,
+   rather than in the order of the clone's HashMap. The two only differ in
+   the order of tasks with the same dependants count within a set.
+
+   The parallel sort is checked against the sequential one on a graph
+   large enough for its layers to be split.
+  */
+  private static final int GRAPHS = 500;
+
+  public static void main(String[] args) {
+    Random random = new Random(1);
+    for (int i = 0; i < GRAPHS; i++) {
+      DirectedAcyclicGraph<Task> graph = randomGraph(random, 1 + random.nextInt(80), random.nextInt(200));
+      HashMap<Task, int[]> expected = referenceSort(graph);
+      checkSort(graph, TaskSorter.sort(graph), expected);
+    }
+    checkParallel(random, 4 * TaskSorter.PARALLEL_THRESHOLD);
+  }
+
+  /**
+   * The original clone and rescan sort, without modifying the tasks.
+   *
+   * @param graph the directed acyclic graph of tasks
+   * @return the id and priority of each task
+   */
+  private static HashMap<Task, int[]> referenceSort(DirectedAcyclicGraph<Task> graph) {
+    DirectedAcyclicGraph<Task> graphCopy = graph.clone();
+    HashMap<Task, int[]> result = new HashMap<>();
+    int taskEnumerator = 0;
+    while (graphCopy.size() > 0) {
+      List<Task> tasks = new ArrayList<>();
+      for (Task task : graph.nodes()) {
+        if (graphCopy.get(task) != null && graphCopy.get(task).isEmpty()) {
+          tasks.add(task);
+        }
+      }
+
+      int[] dependantsCounts = new int[tasks.size()];
+      for (int i = 0; i < tasks.size(); i++) {
+        for (Task t : graphCopy.nodes()) {
+          if (graphCopy.get(t).contains(tasks.get(i))) {
+            dependantsCounts[i]++;
+          }
+        }
+      }
+      List<Integer> indices = new ArrayList<>();
+      for (int i = 0; i < tasks.size(); i++) {
+        indices.add(i);
+      }
+      indices.sort((a, b) -> Integer.compare(dependantsCounts[b], dependantsCounts[a]));
+
+      for (int i = 0; i < tasks.size(); i++) {
+        Task task = tasks.get(indices.get(i));
+        int maxPriority = -1;
+        for (Task dependency : graph.get(task)) {
+          maxPriority = Math.max(maxPriority, result.get(dependency)[0]);
+        }
+        result.put(task, new int[] {taskEnumerator++, maxPriority});
+        graphCopy.removeNode(task);
+      }
+    }
+    return result;
+  }
+
+  private static void checkParallel(Random random, int nodes) {
+    Task[] tasks = new Task[nodes];
+    for (int i = 0; i < nodes; i++) {
+      tasks[i] = new Task(0, 0);
+    }
+    // edges only point to lower indices, so there is no cycle, and each task's targets are distinct
+    int[] edges = new int[6 * nodes];
+    int edgeCount = 0;
+    for (int i = 1; i < nodes; i++) {
+      int first = edgeCount;
+      for (int k = random.nextInt(4); k > 0; k--) {
+        int to = random.nextInt(i);
+        boolean repeated = false;
+        for (int e = first + 1; e < edgeCount; e += 2) {
+          repeated |= edges[e] == to;
+        }
+        if (!repeated) {
+          edges[edgeCount++] = i;
+          edges[edgeCount++] = to;
+        }
+      }
+    }
+    CompactGraph<Task> graph = DirectedAcyclicGraph.fromIndexedEdges(tasks, Arrays.copyOf(edges, edgeCount)).freeze();
+
+    SortedTasks sequential = TaskSorter.sort(graph, false);
+    int[] ids = new int[nodes];
+    int[] priorities = new int[nodes];
+    for (int i = 0; i < nodes; i++) {
+      ids[i] = tasks[i].id();
+      priorities[i] = tasks[i].priority();
+    }
+    SortedTasks parallel = TaskSorter.sort(graph, true);
+    for (int i = 0; i < nodes; i++) {
+      check(tasks[i].id() == ids[i] && tasks[i].priority() == priorities[i], "parallel sort differs at " + tasks[i]);
+      check(sequential.get(i) == parallel.get(i), "parallel order differs at rank " + i);
+    }
+  }
+
+  private static void checkSort(DirectedAcyclicGraph<Task> graph, SortedTasks sorted, HashMap<Task, int[]> expected) {
+    check(sorted.size() == graph.size(), "sorted " + sorted.size() + " of " + graph.size() + " tasks");
+    Task previous = null;
+    for (Task task : sorted) {
+      int[] idAndPriority = expected.get(task);
+      check(task.id() == idAndPriority[0], task + " expected id " + idAndPriority[0]);
+      check(task.priority() == idAndPriority[1], task + " expected priority " + idAndPriority[1]);
+      if (previous != null) {
+        boolean ordered = previous.priority() < task.priority()
+            || (previous.priority() == task.priority() && previous.id() < task.id());
+        check(ordered, previous + " is sorted before " + task);
+      }
+      previous = task;
+    }
+  }
+}
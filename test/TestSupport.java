@@ -0,0 +1,68 @@
+package taskChainPlanner;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+final class TestSupport {
+  /*
+   The checks and graph builders shared by the tests.
+
+   Each test is a class with a main method, which make test runs with
+   assertions enabled, and which fails on the first check that doesn't
+   hold, with the message of that check.
+  */
+  private TestSupport() {}
+
+  /**
+   * Fail the test if a condition doesn't hold.
+   *
+   * @param condition the condition that should hold
+   * @param message what went wrong if it doesn't
+   */
+  static void check(boolean condition, String message) {
+    if (!condition) {
+      throw new AssertionError(message);
+    }
+  }
+
+  /**
+   * Create tasks named t0, t1 and so on, at the origin.
+   *
+   * @param n the number of tasks
+   * @return the tasks, in the order of their names
+   */
+  static List<Task> tasks(int n) {
+    List<Task> tasks = new ArrayList<>(n);
+    for (int i = 0; i < n; i++) {
+      Task task = new Task(0, 0);
+      task.setName("t" + i);
+      tasks.add(task);
+    }
+    return tasks;
+  }
+
+  /**
+   * Build a random graph, skipping the edges that would create a cycle.
+   *
+   * @param random the source of randomness
+   * @param nodes the number of tasks
+   * @param edges the number of edges to try to insert
+   * @return the graph of tasks
+   */
+  static DirectedAcyclicGraph<Task> randomGraph(Random random, int nodes, int edges) {
+    DirectedAcyclicGraph<Task> graph = new DirectedAcyclicGraph<>();
+    List<Task> tasks = tasks(nodes);
+    for (Task task : tasks) {
+      graph.insertNode(task);
+    }
+    for (int k = 0; k < edges; k++) {
+      int from = random.nextInt(nodes);
+      int to = random.nextInt(nodes);
+      if (from != to) {
+        graph.insertEdge(tasks.get(from), tasks.get(to));
+      }
+    }
+    return graph;
+  }
+}